@@ -0,0 +1,83 @@
+/**
+ * The edges of a {@link GraphSnapshot}, by vertex id. Searches read them only through a
+ * {@link Cursor}, so the edges can be stored either as plain arrays ({@link ArrayAdjacency}) or
+ * compressed ({@link CompressedAdjacency}).
+ */
+abstract class Adjacency {
+
+    /**
+     * @return the number of vertices
+     */
+    abstract int size();
+
+    /**
+     * @return the number of edges
+     */
+    abstract int edgeCount();
+
+    /**
+     * @return the number of bytes the edges take up, not counting object headers
+     */
+    abstract long byteCount();
+
+    /**
+     * @return a new cursor; each thread needs its own
+     */
+    abstract Cursor cursor();
+
+    /**
+     * @return the same edges as plain arrays, in the same order
+     */
+    abstract ArrayAdjacency toArrays();
+
+    /**
+     * Reads the edges out of one vertex in order. After {@link #reset}, each call to
+     * {@link #next} moves to the next edge, and {@link #target} and {@link #weight} describe it.
+     *
+     * A cursor can also be parked and picked up later, as depth-first search does for every
+     * vertex on its stack: save {@link #edge}, {@link #position}, and {@link #last}, and pass
+     * them back to {@link #resume}.
+     */
+    abstract static class Cursor {
+        // The vertex whose edges are being read
+        int vertex;
+        // Index of the current edge among all edges, and of the first edge after this vertex's
+        int edge;
+        int end;
+        // Where the next edge is encoded, and the target of the current edge, if the
+        // representation needs them to decode the next edge
+        int position;
+        int last;
+        // Target of the current edge
+        int target;
+
+        /**
+         * Moves to just before the first edge out of {@code v}.
+         */
+        abstract void reset(int v);
+
+        /**
+         * @return whether there was another edge to move to
+         */
+        abstract boolean next();
+
+        /**
+         * @return the weight of the current edge
+         */
+        abstract int weight();
+
+        final int target() {
+            return target;
+        }
+
+        /**
+         * Picks up where a cursor on the edges of {@code v} left off.
+         */
+        final void resume(int v, int edge, int position, int last) {
+            reset(v);
+            this.edge = edge;
+            this.position = position;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Edges in compressed sparse row form: the edges of vertex v go to {@code targets[offsets[v]]}
+ * through {@code targets[offsets[v + 1] - 1]}, with the matching weights in {@code weights}.
+ * Each vertex's edges stay in the order they were given.
+ */
+final class ArrayAdjacency extends Adjacency {
+
+    final int[] offsets;
+    final int[] targets;
+    final int[] weights;
+
+    ArrayAdjacency(int[] offsets, int[] targets, int[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    @Override
+    int size() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    int edgeCount() {
+        return targets.length;
+    }
+
+    @Override
+    long byteCount() {
+        return 4L * (offsets.length + targets.length + weights.length);
+    }
+
+    @Override
+    Cursor cursor() {
+        return new ArrayCursor(offsets, targets, weights);
+    }
+
+    @Override
+    ArrayAdjacency toArrays() {
+        return this;
+    }
+
+    /**
+     * @return the same edges, each turned around, with the edges into each vertex in order of
+     *         their source
+     */
+    ArrayAdjacency reversed() {
+        int n = size();
+        int[] reverseOffsets = new int[n + 1];
+        for (int t : targets) {
+            reverseOffsets[t + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        int[] next = Arrays.copyOf(reverseOffsets, n);
+        int[] sources = new int[targets.length];
+        int[] reverseWeights = new int[weights.length];
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int slot = next[targets[e]]++;
+                sources[slot] = v;
+                reverseWeights[slot] = weights[e];
+            }
+        }
+        return new ArrayAdjacency(reverseOffsets, sources, reverseWeights);
+    }
+
+    private static final class ArrayCursor extends Cursor {
+        // The arrays themselves rather than the adjacency, saving a load per edge in searches
+        private final int[] offsets;
+        private final int[] targets;
+        private final int[] weights;
+
+        ArrayCursor(int[] offsets, int[] targets, int[] weights) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+        }
+
+        @Override
+        void reset(int v) {
+            vertex = v;
+            edge = offsets[v] - 1;
+            end = offsets[v + 1];
+        }
+
+        @Override
+        boolean next() {
+            if (edge + 1 >= end) {
+                return false;
+            }
+            target = targets[++edge];
+            return true;
+        }
+
+        @Override
+        int weight() {
+            return weights[edge];
+        }
+    }
+}
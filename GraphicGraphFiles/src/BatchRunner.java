@@ -0,0 +1,414 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs a list of searches over one graph without a display, in parallel, and streams their
+ * results to a file.
+ *
+ * Usage: {@code BatchRunner <edge-list> <jobs> <output> [threads] [tsv|binary]}
+ *
+ * The graph is read with {@link EdgeListReader} and searched through a {@link GraphSnapshot}.
+ * Each line of the job file is {@code algorithm source}, where the algorithm is {@code bfs},
+ * {@code dfs}, or {@code dijkstra} and a source of {@code *} means one job for every vertex;
+ * blank lines and lines starting with {@code #} are skipped. Jobs are numbered from 0 in the
+ * order they are listed, and their results are written in that order. The output is {@code -}
+ * for standard output.
+ *
+ * In TSV, every vertex a job reached is one line: the job number, the vertex, its parent (empty
+ * for a root), and then the depth for BFS, the start and finish times for DFS, or the distance
+ * for Dijkstra. The binary format is big-endian, as written by {@link DataOutputStream}: the
+ * vertex count and every vertex label (as {@code writeUTF}), so that vertices can be written as
+ * their index in that table, followed by one record per job: the job number, the number of
+ * vertices reached, and for each of them its index, its parent's index or -1, and the same
+ * numbers as in TSV.
+ *
+ * Only a few jobs ahead of the writer are in memory at any time, however long the job list is.
+ * A failed job, such as one whose source is not in the graph, is reported on standard error and
+ * writes nothing. A summary of throughput and job times is printed at the end.
+ */
+public class BatchRunner {
+
+    // Number of slowest jobs listed in the summary
+    private static final int SLOWEST = 10;
+    // Jobs that may be running or waiting to be written, per worker thread
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private final GraphSnapshot snapshot;
+    private final int threads;
+    private final boolean binary;
+
+    // Statistics, kept by the writer thread
+    private int jobs;
+    private int failed;
+    private long verticesWritten;
+    private long totalNanos;
+    private long maxNanos;
+    // Job times by power of two: histogram[i] counts jobs that took [2^i, 2^(i+1)) microseconds
+    private final long[] histogram = new long[40];
+    private final PriorityQueue<Result> slowest =
+            new PriorityQueue<>((a, b) -> Long.compare(a.nanos, b.nanos));
+
+    /**
+     * @param snapshot the graph to search
+     * @param threads the number of searches to run at once
+     * @param binary whether to write the binary format instead of TSV
+     */
+    public BatchRunner(GraphSnapshot snapshot, int threads, boolean binary) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.snapshot = snapshot;
+        this.threads = threads;
+        this.binary = binary;
+    }
+
+    /**
+     * Runs every job in a job list and writes the results. Can be called once per runner.
+     *
+     * @param jobList the job list, which is read to the end but not closed
+     * @param out where to write the results, which is flushed but not closed
+     * @throws IOException if the job list cannot be read or the results cannot be written
+     * @throws IllegalArgumentException if a line of the job list is malformed
+     * @throws InterruptedException if interrupted while waiting for the jobs
+     */
+    public void run(BufferedReader jobList, OutputStream out)
+            throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore window = new Semaphore(threads * WINDOW_PER_THREAD);
+        LinkedBlockingQueue<Result> done = new LinkedBlockingQueue<>();
+        ResultWriter writer = new ResultWriter(out, done, window);
+        Thread writerThread = new Thread(writer, "batch-writer");
+        writerThread.start();
+        int submitted = 0;
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = jobList.readLine()) != null && writer.error == null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] tokens = line.split("\\s+");
+                if (tokens.length != 2 || !isAlgorithm(tokens[0])) {
+                    throw new IllegalArgumentException("Malformed line " + lineNumber);
+                }
+                List<String> sources = "*".equals(tokens[1]) ? snapshot.getVertices()
+                        : Collections.singletonList(tokens[1]);
+                for (String source : sources) {
+                    window.acquire();
+                    int job = submitted++;
+                    String algorithm = tokens[0];
+                    pool.execute(() -> done.add(runJob(job, algorithm, source)));
+                }
+            }
+        } finally {
+            pool.shutdown();
+            done.add(new Result(submitted, null, null, null, null, 0));
+            writerThread.join();
+        }
+        if (writer.error != null) {
+            throw writer.error;
+        }
+    }
+
+    private static boolean isAlgorithm(String algorithm) {
+        return "bfs".equals(algorithm) || "dfs".equals(algorithm)
+                || "dijkstra".equals(algorithm);
+    }
+
+    private Result runJob(int job, String algorithm, String source) {
+        long start = System.nanoTime();
+        try {
+            GraphSnapshot.Search search;
+            switch (algorithm) {
+                case "bfs":
+                    search = snapshot.bfsSearch(source);
+                    break;
+                case "dfs":
+                    search = snapshot.dfsSearch(source);
+                    break;
+                default:
+                    search = snapshot.dijkstraSearch(source);
+            }
+            return new Result(job, algorithm, source, search, null, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return new Result(job, algorithm, source, null, e.getMessage(),
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * A finished job, or with a null algorithm, the end of the jobs; its job number is then the
+     * number of jobs.
+     */
+    private static final class Result {
+        private final int job;
+        private final String algorithm;
+        private final String source;
+        private final GraphSnapshot.Search search;
+        private final String error;
+        private final long nanos;
+
+        Result(int job, String algorithm, String source, GraphSnapshot.Search search,
+               String error, long nanos) {
+            this.job = job;
+            this.algorithm = algorithm;
+            this.source = source;
+            this.search = search;
+            this.error = error;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Writes finished jobs in job order, holding back any that finish early.
+     */
+    private final class ResultWriter implements Runnable {
+        private final OutputStream out;
+        private final LinkedBlockingQueue<Result> done;
+        private final Semaphore window;
+        private volatile IOException error;
+
+        ResultWriter(OutputStream out, LinkedBlockingQueue<Result> done, Semaphore window) {
+            this.out = out;
+            this.done = done;
+            this.window = window;
+        }
+
+        @Override
+        public void run() {
+            HashMap<Integer, Result> early = new HashMap<>();
+            int next = 0;
+            int end = Integer.MAX_VALUE;
+            List<String> labels = snapshot.getVertices();
+            try {
+                DataOutputStream data = null;
+                Writer text = null;
+                if (binary) {
+                    data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+                    data.writeInt(labels.size());
+                    for (String label : labels) {
+                        data.writeUTF(label);
+                    }
+                } else {
+                    text = new BufferedWriter(
+                            new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+                }
+                while (next < end) {
+                    Result result = done.take();
+                    if (result.algorithm == null) {
+                        end = result.job;
+                        continue;
+                    }
+                    early.put(result.job, result);
+                    while ((result = early.remove(next)) != null) {
+                        if (error == null) {
+                            if (binary) {
+                                writeBinary(data, result);
+                            } else {
+                                writeText(text, labels, result);
+                            }
+                        }
+                        record(result);
+                        window.release();
+                        next++;
+                    }
+                }
+                if (binary) {
+                    data.flush();
+                } else {
+                    text.flush();
+                }
+            } catch (IOException e) {
+                // Keep taking results so that the runner is not left waiting on the window
+                error = e;
+                drain(early, next, end);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void drain(HashMap<Integer, Result> early, int next, int end) {
+            try {
+                while (next < end) {
+                    Result result = done.take();
+                    if (result.algorithm == null) {
+                        end = result.job;
+                        continue;
+                    }
+                    early.put(result.job, result);
+                    while (early.remove(next) != null) {
+                        window.release();
+                        next++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void writeText(Writer text, List<String> labels, Result result)
+            throws IOException {
+        if (result.search == null) {
+            return;
+        }
+        GraphSnapshot.Search search = result.search;
+        String job = Integer.toString(result.job);
+        boolean dfs = "dfs".equals(result.algorithm);
+        int count = search.getOrder().size();
+        for (int i = 0; i < count; i++) {
+            int v = search.vertexAt(i);
+            int parent = search.parentOf(v);
+            text.write(job);
+            text.write('\t');
+            text.write(labels.get(v));
+            text.write('\t');
+            if (parent >= 0) {
+                text.write(labels.get(parent));
+            }
+            text.write('\t');
+            if (dfs) {
+                text.write(Integer.toString(search.startOf(v)));
+                text.write('\t');
+                text.write(Integer.toString(search.finishOf(v)));
+            } else {
+                text.write(Integer.toString(search.distanceOf(v)));
+            }
+            text.write('\n');
+        }
+    }
+
+    private void writeBinary(DataOutputStream data, Result result) throws IOException {
+        if (result.search == null) {
+            return;
+        }
+        GraphSnapshot.Search search = result.search;
+        boolean dfs = "dfs".equals(result.algorithm);
+        int count = search.getOrder().size();
+        data.writeInt(result.job);
+        data.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            int v = search.vertexAt(i);
+            data.writeInt(v);
+            data.writeInt(search.parentOf(v));
+            if (dfs) {
+                data.writeInt(search.startOf(v));
+                data.writeInt(search.finishOf(v));
+            } else {
+                data.writeInt(search.distanceOf(v));
+            }
+        }
+    }
+
+    /**
+     * Helper method that adds a written job to the statistics.
+     */
+    private void record(Result result) {
+        jobs++;
+        if (result.search == null) {
+            failed++;
+            System.err.println("Job " + result.job + " (" + result.algorithm + " "
+                    + result.source + "): " + result.error);
+        } else {
+            verticesWritten += result.search.getOrder().size();
+        }
+        totalNanos += result.nanos;
+        maxNanos = Math.max(maxNanos, result.nanos);
+        long micros = Math.max(1, result.nanos / 1000);
+        int bucket = 63 - Long.numberOfLeadingZeros(micros);
+        histogram[Math.min(bucket, histogram.length - 1)]++;
+        // Without the search, so that only the times of the slowest jobs are kept
+        slowest.add(new Result(result.job, result.algorithm, result.source, null, null,
+                result.nanos));
+        if (slowest.size() > SLOWEST) {
+            slowest.poll();
+        }
+    }
+
+    /**
+     * Prints the throughput and job times of a finished run.
+     *
+     * @param elapsedNanos the wall clock time of the run
+     */
+    public void printSummary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.err.printf("%d jobs (%d failed) on %d threads in %.2f s: %.1f jobs/s, "
+                + "%d vertices written%n", jobs, failed, threads, seconds, jobs / seconds,
+                verticesWritten);
+        if (jobs == 0) {
+            return;
+        }
+        System.err.printf("job time: mean %.3f ms, max %.3f ms%n",
+                totalNanos / 1e6 / jobs, maxNanos / 1e6);
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                System.err.printf("  %10s - %-10s %8d%n", formatMicros(1L << i),
+                        formatMicros(1L << (i + 1)), histogram[i]);
+            }
+        }
+        ArrayList<Result> list = new ArrayList<>(slowest);
+        list.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+        System.err.println("slowest jobs:");
+        for (Result r : list) {
+            System.err.printf("  %8.3f ms  job %d  %s %s%n", r.nanos / 1e6, r.job,
+                    r.algorithm, r.source);
+        }
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros >= 1_000_000) {
+            return (micros / 1_000_000.0) + " s";
+        }
+        if (micros >= 1000) {
+            return (micros / 1000.0) + " ms";
+        }
+        return micros + " us";
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3 || args.length > 5
+                || (args.length == 5 && !args[4].equals("tsv") && !args[4].equals("binary"))) {
+            System.err.println("Usage: BatchRunner <edge-list> <jobs> <output> [threads] "
+                    + "[tsv|binary]");
+            System.exit(2);
+        }
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        boolean binary = args.length > 4 && args[4].equals("binary");
+
+        long start = System.nanoTime();
+        GraphSnapshot snapshot = GraphSnapshot.of(EdgeListReader.read(Paths.get(args[0])));
+        System.err.printf("Loaded %d vertices and %d edges in %.2f s%n", snapshot.size(),
+                snapshot.edgeCount(), (System.nanoTime() - start) / 1e9);
+
+        BatchRunner runner = new BatchRunner(snapshot, threads, binary);
+        start = System.nanoTime();
+        try (BufferedReader jobList = Files.newBufferedReader(Paths.get(args[1]));
+             OutputStream out = "-".equals(args[2]) ? System.out
+                     : new FileOutputStream(args[2])) {
+            runner.run(jobList, out);
+        }
+        runner.printSummary(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.Arrays;
+
+/**
+ * Edges stored in a few bytes each. The edges of a vertex are sorted by target, and the targets
+ * are written as variable-length gaps: the first as its signed distance from the vertex itself,
+ * and each later one as its distance from the one before, less one. A gap takes one byte per seven
+ * bits, so on a graph whose vertices are numbered for locality (see {@link VertexOrdering}) most
+ * edges take one or two bytes. Weights are stored apart, as their difference from the least
+ * weight in the fewest whole bytes that fit the range of weights, so that the weight of any edge
+ * can be read without decoding the others.
+ */
+final class CompressedAdjacency extends Adjacency {
+
+    // The edges of vertex v are numbered edgeOffsets[v] to edgeOffsets[v + 1] - 1, and their
+    // targets are encoded from ids[byteOffsets[v]]
+    private final int[] edgeOffsets;
+    private final int[] byteOffsets;
+    private final byte[] ids;
+    // The weight of edge e, less minWeight, is in weightWidth bytes from weightBytes[e *
+    // weightWidth], least significant first
+    private final byte[] weightBytes;
+    private final int weightWidth;
+    private final int minWeight;
+
+    private CompressedAdjacency(int[] edgeOffsets, int[] byteOffsets, byte[] ids,
+                                byte[] weightBytes, int weightWidth, int minWeight) {
+        this.edgeOffsets = edgeOffsets;
+        this.byteOffsets = byteOffsets;
+        this.ids = ids;
+        this.weightBytes = weightBytes;
+        this.weightWidth = weightWidth;
+        this.minWeight = minWeight;
+    }
+
+    /**
+     * Compresses edges stored as arrays.
+     *
+     * @param plain the edges to compress
+     * @return the same edges, compressed, with each vertex's edges sorted by target
+     */
+    static CompressedAdjacency of(ArrayAdjacency plain) {
+        int n = plain.size();
+        int m = plain.edgeCount();
+        int[] offsets = plain.offsets;
+
+        // Sort each vertex's edges by target, carrying the weights along
+        int[] targets = new int[m];
+        int[] weights = new int[m];
+        long[] keys = new long[m];
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                keys[e] = (long) plain.targets[e] << 32 | e;
+            }
+            Arrays.sort(keys, offsets[v], offsets[v + 1]);
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int from = (int) keys[e];
+                targets[e] = plain.targets[from];
+                weights[e] = plain.weights[from];
+            }
+        }
+
+        int[] byteOffsets = new int[n + 1];
+        int bytes = 0;
+        for (int v = 0; v < n; v++) {
+            byteOffsets[v] = bytes;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                bytes += varintLength(gap(v, targets, offsets[v], e));
+            }
+        }
+        byteOffsets[n] = bytes;
+        byte[] ids = new byte[bytes];
+        int position = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int value = gap(v, targets, offsets[v], e);
+                while ((value & ~0x7f) != 0) {
+                    ids[position++] = (byte) (value & 0x7f | 0x80);
+                    value >>>= 7;
+                }
+                ids[position++] = (byte) value;
+            }
+        }
+
+        int minWeight = 0;
+        int maxWeight = 0;
+        for (int e = 0; e < m; e++) {
+            if (e == 0 || weights[e] < minWeight) {
+                minWeight = weights[e];
+            }
+            if (e == 0 || weights[e] > maxWeight) {
+                maxWeight = weights[e];
+            }
+        }
+        long range = (long) maxWeight - minWeight;
+        int width = 0;
+        while (range >>> (8 * width) != 0) {
+            width++;
+        }
+        byte[] weightBytes = new byte[m * width];
+        for (int e = 0; e < m; e++) {
+            int value = weights[e] - minWeight;
+            for (int i = 0; i < width; i++) {
+                weightBytes[e * width + i] = (byte) (value >>> (8 * i));
+            }
+        }
+        return new CompressedAdjacency(offsets, byteOffsets, ids, weightBytes, width, minWeight);
+    }
+
+    /**
+     * Helper method that finds the number encoded for edge {@code e} of vertex {@code v}, whose
+     * edges start at {@code first}.
+     */
+    private static int gap(int v, int[] targets, int first, int e) {
+        if (e == first) {
+            int distance = targets[e] - v;
+            return (distance << 1) ^ (distance >> 31);
+        }
+        return targets[e] - targets[e - 1] - 1;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    @Override
+    int size() {
+        return edgeOffsets.length - 1;
+    }
+
+    @Override
+    int edgeCount() {
+        return edgeOffsets[edgeOffsets.length - 1];
+    }
+
+    @Override
+    long byteCount() {
+        return 4L * (edgeOffsets.length + byteOffsets.length) + ids.length + weightBytes.length;
+    }
+
+    @Override
+    Cursor cursor() {
+        return new CompressedCursor(this);
+    }
+
+    @Override
+    ArrayAdjacency toArrays() {
+        int m = edgeCount();
+        int[] targets = new int[m];
+        int[] weights = new int[m];
+        Cursor cursor = cursor();
+        for (int v = 0; v < size(); v++) {
+            cursor.reset(v);
+            while (cursor.next()) {
+                targets[cursor.edge] = cursor.target;
+                weights[cursor.edge] = cursor.weight();
+            }
+        }
+        return new ArrayAdjacency(edgeOffsets, targets, weights);
+    }
+
+    private static final class CompressedCursor extends Cursor {
+        private final int[] edgeOffsets;
+        private final int[] byteOffsets;
+        private final byte[] ids;
+        private final byte[] weightBytes;
+        private final int weightWidth;
+        private final int minWeight;
+        // Index of the first edge of the vertex
+        private int first;
+
+        CompressedCursor(CompressedAdjacency adjacency) {
+            this.edgeOffsets = adjacency.edgeOffsets;
+            this.byteOffsets = adjacency.byteOffsets;
+            this.ids = adjacency.ids;
+            this.weightBytes = adjacency.weightBytes;
+            this.weightWidth = adjacency.weightWidth;
+            this.minWeight = adjacency.minWeight;
+        }
+
+        @Override
+        void reset(int v) {
+            vertex = v;
+            first = edgeOffsets[v];
+            edge = first - 1;
+            end = edgeOffsets[v + 1];
+            position = byteOffsets[v];
+            last = v;
+        }
+
+        @Override
+        boolean next() {
+            if (edge + 1 >= end) {
+                return false;
+            }
+            edge++;
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = ids[position++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (edge == first) {
+                target = vertex + ((value >>> 1) ^ -(value & 1));
+            } else {
+                target = last + 1 + value;
+            }
+            last = target;
+            return true;
+        }
+
+        @Override
+        int weight() {
+            int value = 0;
+            int p = edge * weightWidth;
+            for (int i = 0; i < weightWidth; i++) {
+                value |= (weightBytes[p + i] & 0xff) << (8 * i);
+            }
+            return minWeight + value;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a {@link Graph} from a text edge list, the format also read by
+ * {@link SemiExternalGraph#build}. Each line is either {@code u v weight} for a directed edge or a
+ * lone {@code u} for a vertex; blank lines and lines starting with {@code #} are skipped. As in
+ * {@link Graph#addDirectedEdge}, a repeated edge keeps its first weight.
+ */
+public final class EdgeListReader {
+
+    private EdgeListReader() {
+    }
+
+    /**
+     * Reads a graph from a text edge list file.
+     *
+     * @param file a text edge list
+     * @return the graph it describes
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line is malformed or is an edge from a vertex to
+     *                                  itself
+     */
+    public static Graph read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Reads a graph from a text edge list.
+     *
+     * @param reader a text edge list, which is read to the end but not closed
+     * @return the graph it describes
+     * @throws IOException if the edge list cannot be read
+     * @throws IllegalArgumentException if a line is malformed or is an edge from a vertex to
+     *                                  itself
+     */
+    public static Graph read(BufferedReader reader) throws IOException {
+        Graph g = new Graph();
+        parse(reader, new Handler() {
+            @Override
+            public void vertex(String u) {
+                g.addVertex(u, false);
+            }
+
+            @Override
+            public void edge(String u, String v, int weight) {
+                g.addDirectedEdge(u, v, weight);
+            }
+        });
+        return g;
+    }
+
+    /**
+     * Receives the vertices and edges of an edge list in the order they appear.
+     */
+    interface Handler {
+        void vertex(String u) throws IOException;
+
+        void edge(String u, String v, int weight) throws IOException;
+    }
+
+    /**
+     * Parses a text edge list, passing every vertex and edge line to {@code handler}. This is
+     * the one parser of the format, shared by {@link #read} and {@link SemiExternalGraph#build}.
+     *
+     * @param reader a text edge list, which is read to the end but not closed
+     * @param handler receives the parsed lines
+     * @throws IOException if the edge list cannot be read, or the handler throws it
+     * @throws IllegalArgumentException if a line is malformed or is an edge from a vertex to
+     *                                  itself
+     */
+    static void parse(BufferedReader reader, Handler handler) throws IOException {
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            if (tokens.length == 1) {
+                handler.vertex(tokens[0]);
+                continue;
+            }
+            if (tokens.length != 3) {
+                throw new IllegalArgumentException("Malformed line " + lineNumber);
+            }
+            if (tokens[0].equals(tokens[1])) {
+                throw new IllegalArgumentException("Vertices can't be equal");
+            }
+            int weight;
+            try {
+                weight = Integer.parseInt(tokens[2]);
+            } catch (NumberFormatException n) {
+                throw new IllegalArgumentException("Malformed line " + lineNumber);
+            }
+            handler.edge(tokens[0], tokens[1], weight);
+        }
+    }
+}
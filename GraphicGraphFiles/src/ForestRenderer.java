@@ -0,0 +1,358 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws a BFS, DFS, or shortest path forest to PNG tiles without a display, using the tidy
+ * layout of {@link TreeLayout}. Tiles are written as {@code z/x/y.png} under an output
+ * directory, where zoom level 0 fits the whole forest in one tile and every further level
+ * doubles the scale, up to full size. Edges are drawn orthogonally (down from the parent, across
+ * the children, and down to each child) so that wide families do not cross every tile between
+ * them. Tiles with nothing on them are not written, and the tiles of a zoom level are drawn in
+ * parallel.
+ */
+public class ForestRenderer {
+
+    // Side of a square tile, in pixels
+    public static final int TILE_SIZE = 256;
+    // Full-size distances between neighboring nodes and between levels, in pixels
+    private static final int NODE_SPACING = 60;
+    private static final int LEVEL_HEIGHT = 90;
+    private static final int NODE_RADIUS = 15;
+    // Below this scale labels would be unreadable, so only shapes are drawn
+    private static final double LABEL_SCALE = 0.5;
+    private static final Color NODE_COLOR = new Color(0x8c, 0x8c, 0x8c);
+    private static final Color EDGE_COLOR = new Color(0x40, 0x40, 0x40);
+    private static final Color SPRITE_COLOR = new Color(0xd3, 0xd3, 0xd3);
+
+    private final Graph forest;
+    private final TreeLayout layout;
+    private final boolean showTimes;
+    private final boolean showWeights;
+    // Full-size position of every node's center
+    private final double[] nodeX;
+    private final double[] nodeY;
+    // Full-size axis-aligned edge segments, and the child whose weight each one carries or -1
+    private final double[] segments;
+    private final int[] segmentChild;
+    private final int segmentCount;
+    private final int threads;
+
+    /**
+     * Prepares a forest for rendering.
+     *
+     * @param forest a forest returned by {@link Graph#bfs}, {@link Graph#dfs}, or
+     *               {@link Graph#dijkstra}
+     * @param showTimes whether to draw the DFS start/finish times next to every node
+     * @param showWeights whether to draw the edge weights, as for a shortest path tree
+     */
+    public ForestRenderer(Graph forest, boolean showTimes, boolean showWeights) {
+        this.forest = forest;
+        this.layout = TreeLayout.of(forest);
+        this.showTimes = showTimes;
+        this.showWeights = showWeights;
+        this.threads = Runtime.getRuntime().availableProcessors();
+        int n = layout.size();
+        nodeX = new double[n];
+        nodeY = new double[n];
+        for (int i = 0; i < n; i++) {
+            nodeX[i] = NODE_SPACING * (layout.getX(i) + 0.5);
+            nodeY[i] = LEVEL_HEIGHT * (layout.getDepth(i) + 0.5);
+        }
+
+        // Every child gets a stub up to its family's bar; every parent gets a stub down to it
+        // and the bar itself, which spans the parent and all of its children
+        int[] first = new int[n];
+        int[] last = new int[n];
+        Arrays.fill(first, -1);
+        int parents = 0;
+        for (int i = 0; i < n; i++) {
+            int p = layout.getParent(i);
+            if (p >= 0) {
+                if (first[p] < 0) {
+                    first[p] = i;
+                    parents++;
+                }
+                last[p] = i;
+            }
+        }
+        int count = 0;
+        segments = new double[4 * (n + 2 * parents)];
+        segmentChild = new int[n + 2 * parents];
+        for (int i = 0; i < n; i++) {
+            int p = layout.getParent(i);
+            if (p >= 0) {
+                double bar = nodeY[p] + LEVEL_HEIGHT / 2.0;
+                count = addSegment(count, nodeX[i], bar, nodeX[i], nodeY[i], i);
+            }
+            if (first[i] >= 0) {
+                double bar = nodeY[i] + LEVEL_HEIGHT / 2.0;
+                count = addSegment(count, nodeX[i], nodeY[i], nodeX[i], bar, -1);
+                double left = Math.min(nodeX[i], nodeX[first[i]]);
+                double right = Math.max(nodeX[i], nodeX[last[i]]);
+                count = addSegment(count, left, bar, right, bar, -1);
+            }
+        }
+        segmentCount = count;
+    }
+
+    private int addSegment(int count, double x1, double y1, double x2, double y2, int child) {
+        segments[4 * count] = x1;
+        segments[4 * count + 1] = y1;
+        segments[4 * count + 2] = x2;
+        segments[4 * count + 3] = y2;
+        segmentChild[count] = child;
+        return count + 1;
+    }
+
+    /**
+     * @return the largest zoom level, at which the forest is drawn full size
+     */
+    public int maxZoom() {
+        double extent = Math.max(NODE_SPACING * (layout.getWidth() + 1),
+                LEVEL_HEIGHT * (layout.getHeight() + 1));
+        int zoom = 0;
+        while (TILE_SIZE * (1L << zoom) < extent) {
+            zoom++;
+        }
+        return zoom;
+    }
+
+    /**
+     * Draws every zoom level from 0 to {@link #maxZoom} into {@code directory}.
+     *
+     * @param directory the directory to write the tiles to
+     * @return the number of tiles written
+     * @throws IOException if a tile cannot be written
+     */
+    public int render(Path directory) throws IOException {
+        return render(directory, maxZoom());
+    }
+
+    /**
+     * Draws every zoom level from 0 to {@code maxZoom} into {@code directory}. Levels past
+     * {@link #maxZoom} draw the forest larger than full size.
+     *
+     * @param directory the directory to write the tiles to
+     * @param maxZoom the largest zoom level to draw
+     * @return the number of tiles written
+     * @throws IOException if a tile cannot be written
+     */
+    public int render(Path directory, int maxZoom) throws IOException {
+        int fullZoom = maxZoom();
+        int written = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int zoom = 0; zoom <= maxZoom; zoom++) {
+                written += renderLevel(directory, zoom, Math.pow(2, zoom - fullZoom), pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return written;
+    }
+
+    /**
+     * Helper method that buckets the nodes and segments by the tiles they touch at one zoom
+     * level and draws the non-empty tiles in parallel.
+     */
+    private int renderLevel(Path directory, int zoom, double scale, ExecutorService pool)
+            throws IOException {
+        HashMap<Long, Tile> tiles = new HashMap<>();
+        // A node's shape and labels fit in a box of about one spacing by one level
+        double halfWidth = NODE_SPACING / 2.0 * scale;
+        double halfHeight = LEVEL_HEIGHT / 2.0 * scale;
+        for (int i = 0; i < nodeX.length; i++) {
+            double x = nodeX[i] * scale;
+            double y = nodeY[i] * scale;
+            for (long tx = tile(x - halfWidth); tx <= tile(x + halfWidth); tx++) {
+                for (long ty = tile(y - halfHeight); ty <= tile(y + halfHeight); ty++) {
+                    tileAt(tiles, tx, ty).nodes.add(i);
+                }
+            }
+        }
+        for (int s = 0; s < segmentCount; s++) {
+            double x1 = Math.min(segments[4 * s], segments[4 * s + 2]) * scale;
+            double x2 = Math.max(segments[4 * s], segments[4 * s + 2]) * scale;
+            double y1 = Math.min(segments[4 * s + 1], segments[4 * s + 3]) * scale;
+            double y2 = Math.max(segments[4 * s + 1], segments[4 * s + 3]) * scale;
+            for (long tx = tile(x1 - 1); tx <= tile(x2 + 1); tx++) {
+                for (long ty = tile(y1 - 1); ty <= tile(y2 + 1); ty++) {
+                    tileAt(tiles, tx, ty).segments.add(s);
+                }
+            }
+        }
+
+        List<Future<?>> pending = new ArrayList<>();
+        for (Tile tile : tiles.values()) {
+            pending.add(pool.submit(() -> {
+                drawTile(directory, zoom, scale, tile);
+                return null;
+            }));
+        }
+        for (Future<?> f : pending) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while rendering", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return tiles.size();
+    }
+
+    /**
+     * Helper method that draws one tile and writes it to {@code directory/zoom/x/y.png}.
+     */
+    private void drawTile(Path directory, int zoom, double scale, Tile tile) throws IOException {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g.translate(-(double) tile.x * TILE_SIZE, -(double) tile.y * TILE_SIZE);
+            boolean labels = scale >= LABEL_SCALE;
+            Font font = new Font(Font.SANS_SERIF, Font.BOLD, Math.max(1, (int) (16 * scale)));
+            g.setFont(font);
+            FontMetrics metrics = g.getFontMetrics();
+
+            g.setColor(EDGE_COLOR);
+            g.setStroke(new BasicStroke((float) Math.max(1, 2 * scale)));
+            for (int k = 0; k < tile.segments.size; k++) {
+                int s = tile.segments.items[k];
+                g.draw(new Line2D.Double(segments[4 * s] * scale, segments[4 * s + 1] * scale,
+                        segments[4 * s + 2] * scale, segments[4 * s + 3] * scale));
+            }
+            if (labels && showWeights) {
+                for (int k = 0; k < tile.segments.size; k++) {
+                    int s = tile.segments.items[k];
+                    int child = segmentChild[s];
+                    if (child >= 0) {
+                        String parent = layout.getLabel(layout.getParent(child));
+                        String weight = String.valueOf(forest.getWeight(parent,
+                                layout.getLabel(child)));
+                        double midY = (segments[4 * s + 1] + segments[4 * s + 3]) / 2 * scale;
+                        drawBoxedText(g, metrics, weight, segments[4 * s] * scale, midY,
+                                Color.WHITE);
+                    }
+                }
+            }
+
+            double radius = Math.max(1, NODE_RADIUS * scale);
+            g.setStroke(new BasicStroke((float) Math.max(1, scale)));
+            for (int k = 0; k < tile.nodes.size; k++) {
+                int i = tile.nodes.items[k];
+                double x = nodeX[i] * scale;
+                double y = nodeY[i] * scale;
+                Ellipse2D circle = new Ellipse2D.Double(x - radius, y - radius, 2 * radius,
+                        2 * radius);
+                g.setColor(NODE_COLOR);
+                g.fill(circle);
+                g.setColor(Color.BLACK);
+                g.draw(circle);
+                if (labels) {
+                    String label = layout.getLabel(i);
+                    g.drawString(label, (float) (x - metrics.stringWidth(label) / 2.0),
+                            (float) (y + (metrics.getAscent() - metrics.getDescent()) / 2.0));
+                    if (showTimes) {
+                        Vertex v = forest.getVertex(label);
+                        drawBoxedText(g, metrics, v.getStart() + "/" + v.getFinish(), x,
+                                y + radius + metrics.getHeight() * 0.75, SPRITE_COLOR);
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        Path file = directory.resolve(String.valueOf(zoom)).resolve(String.valueOf(tile.x))
+                .resolve(tile.y + ".png");
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image, "png", file.toFile());
+    }
+
+    /**
+     * Helper method that draws {@code text} centered on (x, y) over a filled box.
+     */
+    private static void drawBoxedText(Graphics2D g, FontMetrics metrics, String text, double x,
+                                      double y, Color background) {
+        int width = metrics.stringWidth(text) + 4;
+        int height = metrics.getHeight();
+        Color previous = g.getColor();
+        g.setColor(background);
+        g.fillRect((int) (x - width / 2.0), (int) (y - height / 2.0), width, height);
+        g.setColor(Color.BLACK);
+        g.drawString(text, (float) (x - width / 2.0 + 2),
+                (float) (y + (metrics.getAscent() - metrics.getDescent()) / 2.0));
+        g.setColor(previous);
+    }
+
+    private static long tile(double pixel) {
+        return Math.max(0, (long) Math.floor(pixel / TILE_SIZE));
+    }
+
+    private static Tile tileAt(HashMap<Long, Tile> tiles, long x, long y) {
+        long key = (x << 32) ^ (y & 0xFFFFFFFFL);
+        Tile tile = tiles.get(key);
+        if (tile == null) {
+            tile = new Tile(x, y);
+            tiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * The nodes and segments that touch one tile.
+     */
+    private static class Tile {
+        final long x;
+        final long y;
+        final IntList nodes = new IntList();
+        final IntList segments = new IntList();
+
+        Tile(long x, long y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static class IntList {
+        private int[] items = new int[8];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+    }
+}
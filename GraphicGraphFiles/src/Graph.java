@@ -1,10 +1,19 @@
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 public class Graph {
     private HashMap<String, Vertex>  adjacencyList;
     private HashMap<String, Vertex> roots;
     private int size;
     private int time;
+    // Incremented by every change to the graph, so cached results can tell they are stale
+    private int version;
+    // Topological order of the vertices, or null if there is a cycle, as of topologicalVersion
+    private List<String> topologicalOrder;
+    private int topologicalVersion;
+    // Subscribers to the changes of this graph
+    private final List<Subscription> subscriptions;
 
     /**
      * Initializes an empty graph
@@ -15,6 +24,10 @@ public class Graph {
         this.roots = new HashMap<>();
         this.size = 0;
         this.time = 0;
+        this.version = 0;
+        this.topologicalOrder = null;
+        this.topologicalVersion = -1;
+        this.subscriptions = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -71,6 +84,10 @@ public class Graph {
             return false;
         } else {
             adjacencyList.get(u).addEdge(v, weight);
+            version++;
+            if (!subscriptions.isEmpty()) {
+                publish(GraphEvent.edgeAdded(u, v, weight));
+            }
             return true;
         }
     }
@@ -90,6 +107,10 @@ public class Graph {
                 roots.put(u, newNode);
             }
             size++;
+            version++;
+            if (!subscriptions.isEmpty()) {
+                publish(GraphEvent.vertexAdded(u));
+            }
             return true;
         } else {
             return false;
@@ -106,10 +127,24 @@ public class Graph {
         if (!adjacencyList.containsKey(u)) {
             return false;
         }
-        adjacencyList.remove(u);
+        Vertex removed = adjacencyList.remove(u);
+        boolean publishing = !subscriptions.isEmpty();
+        // Subscribers hear about every edge of the vertex before the vertex itself
+        if (publishing) {
+            for (String v : removed.getNeighbors()) {
+                publish(GraphEvent.edgeRemoved(u, v, removed.getWeight(v)));
+            }
+        }
         for (Map.Entry<String, Vertex> e : adjacencyList.entrySet()) {
+            if (publishing && e.getValue().hasNeighbor(u)) {
+                publish(GraphEvent.edgeRemoved(e.getKey(), u, e.getValue().getWeight(u)));
+            }
             e.getValue().removeEdge(u);
         }
+        version++;
+        if (publishing) {
+            publish(GraphEvent.vertexRemoved(u));
+        }
         return true;
     }
 
@@ -128,13 +163,77 @@ public class Graph {
             throw new IllegalArgumentException("Vertex is not in graph");
         }
         if (containsEdge(u, v)) {
+            int weight = adjacencyList.get(u).getWeight(v);
             adjacencyList.get(u).removeEdge(v);
+            version++;
+            if (!subscriptions.isEmpty()) {
+                publish(GraphEvent.edgeRemoved(u, v, weight));
+            }
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Changes the weight of the directed edge from {@code u} to {@code v}.
+     *
+     * @param u      a vertex
+     * @param v      a vertex
+     * @param weight the new edge weight
+     * @return {@code true} if the graph changed as a result of this call, false otherwise
+     * @throws IllegalArgumentException if a vertex does not exist or edge doesn't exist
+     */
+    public boolean setWeight(String u, String v, int weight) {
+        int previous = getWeight(u, v);
+        if (previous == weight) {
+            return false;
+        }
+        adjacencyList.get(u).addEdge(v, weight);
+        version++;
+        if (!subscriptions.isEmpty()) {
+            publish(GraphEvent.weightChanged(u, v, weight, previous));
+        }
+        return true;
+    }
+
+    /** CHANGE EVENTS */
+
+    /**
+     * Subscribes a listener to every later change of this graph. Changes are delivered in
+     * batches on {@code executor}, never on the thread making them; see {@link Subscription}.
+     * The listener may read the graph only if the executor runs on the thread that changes it,
+     * such as {@code SwingUtilities::invokeLater} for a graph edited by the UI.
+     *
+     * @param listener the listener
+     * @param executor runs the deliveries to the listener
+     * @param capacity the most pending changes kept for the listener before they are dropped
+     *                 and it is sent {@code OVERFLOW}
+     * @return the subscription, which stops deliveries when closed
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public Subscription subscribe(GraphListener listener, Executor executor, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        Subscription s = new Subscription(this, listener, executor, capacity);
+        subscriptions.add(s);
+        return s;
+    }
+
+    void unsubscribe(Subscription s) {
+        subscriptions.remove(s);
+    }
+
+    /**
+     * Helper method that hands an event to every subscriber
+     */
+    private void publish(GraphEvent event) {
+        for (Subscription s : subscriptions) {
+            s.publish(event);
+        }
+    }
+
     /** GRAPH ALGORITHMS /*
 
      /**
@@ -250,15 +349,25 @@ public class Graph {
     }
 
     /**
-     * Dijkstra's Algorithm.
+     * Dijkstra's Algorithm. If the graph is acyclic, the tree is instead found by relaxing edges
+     * in topological order, which takes O(V + E) time and allows negative edge weights. The
+     * distances are the same either way, but where shortest paths tie the two may pick different
+     * parents. {@link OffHeapGraph}, {@link SemiExternalGraph}, and the bounded queries below
+     * always run Dijkstra's algorithm, so they reject negative weights even on acyclic graphs.
      *
      * @param source the root of the shortest path tree
      * @return the shortest path tree rooted at {@code source}
+     * @throws IllegalArgumentException if the source is not in graph, or the graph has a cycle
+     *                                  and a path starting from the source contains a negative
+     *                                  edge weight
      */
     public Graph dijkstra(String source) {
         if (!adjacencyList.containsKey(source)) {
             throw new IllegalArgumentException("Source is not in graph");
         }
+        if (isAcyclic()) {
+            return dagPathTree(source, false);
+        }
         resetNodes();
         adjacencyList.get(source).setDistance(0);
         PriorityQueue<String> queue = new PriorityQueue<>(size, (o1, o2) -> {
@@ -318,6 +427,246 @@ public class Graph {
         return shortestPathTree;
     }
 
+    /**
+     * Finds the longest path from {@code source} to every vertex reachable from it. Only
+     * defined for acyclic graphs; edge weights may be negative.
+     *
+     * @param source the root of the longest path tree
+     * @return the longest path tree rooted at {@code source}
+     * @throws IllegalArgumentException if the source is not in graph or the graph has a cycle
+     */
+    public Graph longestPathTree(String source) {
+        if (!adjacencyList.containsKey(source)) {
+            throw new IllegalArgumentException("Source is not in graph");
+        }
+        if (!isAcyclic()) {
+            throw new IllegalArgumentException("Graph contains a cycle");
+        }
+        return dagPathTree(source, true);
+    }
+
+    /**
+     * Helper method that finds the shortest or longest path tree of an acyclic graph by visiting
+     * the vertices in topological order, starting from the source, and relaxing every edge out
+     * of each reached vertex once.
+     *
+     * @param source the root of the tree
+     * @param longest whether to find longest paths instead of shortest paths
+     * @return the shortest or longest path tree rooted at {@code source}
+     */
+    private Graph dagPathTree(String source, boolean longest) {
+        resetNodes();
+        Vertex sourceVertex = adjacencyList.get(source);
+        sourceVertex.setDistance(0);
+        sourceVertex.setDiscovered(true);
+        Graph pathTree = new Graph();
+        pathTree.addVertex(source, true);
+
+        List<String> order = topologicalOrder();
+        for (int i = order.indexOf(source); i < order.size(); i++) {
+            String curr = order.get(i);
+            Vertex currVertex = adjacencyList.get(curr);
+            if (!currVertex.getDiscovered()) {
+                continue;
+            }
+            pathTree.addVertex(curr, false);
+            for (String s : currVertex.getNeighbors()) {
+                Vertex neighbor = adjacencyList.get(s);
+                int newDistance = currVertex.getDistance() + currVertex.getWeight(s);
+                if (!neighbor.getDiscovered() || (longest ? newDistance > neighbor.getDistance()
+                        : newDistance < neighbor.getDistance())) {
+                    neighbor.setDiscovered(true);
+                    neighbor.setDistance(newDistance);
+                    neighbor.setDistanceUpdate(curr);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Vertex> entry : pathTree.getAdjacencyList()) {
+            String label = entry.getKey();
+            String parent = adjacencyList.get(label).getDistanceUpdate();
+            if (parent != null) {
+                pathTree.addDirectedEdge(parent, label, getWeight(parent, label));
+            }
+        }
+        return pathTree;
+    }
+
+    /**
+     * Dijkstra's Algorithm, stopped as soon as every vertex within {@code radius} of the source
+     * is settled.
+     *
+     * @param source the vertex the search starts at
+     * @param radius the largest distance to report
+     * @return the distance of every vertex at most {@code radius} from {@code source}, including
+     *         the source itself, in order of increasing distance
+     * @throws IllegalArgumentException if the source is not in graph, the radius is negative, or
+     *                                  a settled vertex has an edge with negative weight
+     */
+    public LinkedHashMap<String, Integer> dijkstraWithin(String source, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius must be non-negative");
+        }
+        return boundedDijkstra(source, radius, Integer.MAX_VALUE, null, true);
+    }
+
+    /**
+     * Dijkstra's Algorithm, stopped as soon as the {@code k} vertices nearest to the source are
+     * settled. Ties at the k-th distance are broken arbitrarily.
+     *
+     * @param source the vertex the search starts at
+     * @param k the number of vertices to report
+     * @return the distance of the {@code k} vertices other than {@code source} that are nearest
+     *         to it, or of every reachable vertex if there are fewer, in order of increasing
+     *         distance
+     * @throws IllegalArgumentException if the source is not in graph, k is negative, or a
+     *                                  settled vertex has an edge with negative weight
+     */
+    public LinkedHashMap<String, Integer> dijkstraNearest(String source, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative");
+        }
+        return boundedDijkstra(source, Integer.MAX_VALUE, k, null, false);
+    }
+
+    /**
+     * Dijkstra's Algorithm, stopped as soon as every vertex in {@code targets} is settled.
+     *
+     * @param source the vertex the search starts at
+     * @param targets the vertices to find distances to
+     * @return the distance of every target reachable from {@code source}, in order of
+     *         increasing distance
+     * @throws IllegalArgumentException if the source is not in graph or a settled vertex has an
+     *                                  edge with negative weight
+     */
+    public LinkedHashMap<String, Integer> dijkstraTo(String source, Set<String> targets) {
+        return boundedDijkstra(source, Integer.MAX_VALUE, Integer.MAX_VALUE, targets, true);
+    }
+
+    /**
+     * Helper method that runs Dijkstra's algorithm from {@code source} until the next vertex to
+     * settle is farther than {@code radius}, {@code k} vertices besides the source are settled,
+     * or every target is settled. Distances are kept in a map local to the call, so only the
+     * settled vertices and their neighbors are ever touched. Unlike {@link #dijkstra}, this
+     * never switches to topological order, so negative weights are rejected on acyclic graphs
+     * too.
+     *
+     * @param source the vertex the search starts at
+     * @param radius the largest distance to settle
+     * @param k the number of vertices besides the source to settle
+     * @param targets the vertices to report, or {@code null} to report every settled vertex
+     * @param includeSource whether the source is reported when {@code targets} is null
+     * @return the reported vertices and their distances, in the order they were settled
+     */
+    private LinkedHashMap<String, Integer> boundedDijkstra(String source, int radius, int k,
+                                                           Set<String> targets,
+                                                           boolean includeSource) {
+        if (!adjacencyList.containsKey(source)) {
+            throw new IllegalArgumentException("Source is not in graph");
+        }
+        LinkedHashMap<String, Integer> result = new LinkedHashMap<>();
+        HashMap<String, Integer> distances = new HashMap<>();
+        HashSet<String> settled = new HashSet<>();
+        // Stale entries are skipped instead of removed, which keeps every update O(log n)
+        PriorityQueue<Map.Entry<String, Integer>> queue = new PriorityQueue<>(
+                (o1, o2) -> Integer.compare(o1.getValue(), o2.getValue()));
+        distances.put(source, 0);
+        queue.add(new AbstractMap.SimpleEntry<>(source, 0));
+        int remainingTargets = 0;
+        if (targets != null) {
+            for (String t : targets) {
+                if (adjacencyList.containsKey(t)) {
+                    remainingTargets++;
+                }
+            }
+        }
+
+        while (!queue.isEmpty() && k > 0 && (targets == null || remainingTargets > 0)) {
+            Map.Entry<String, Integer> entry = queue.poll();
+            String curr = entry.getKey();
+            int dist = entry.getValue();
+            if (dist > radius) {
+                break;
+            }
+            if (!settled.add(curr)) {
+                continue;
+            }
+            if (targets == null) {
+                if (!curr.equals(source)) {
+                    k--;
+                    result.put(curr, dist);
+                } else if (includeSource) {
+                    result.put(curr, dist);
+                }
+            } else if (targets.contains(curr)) {
+                result.put(curr, dist);
+                remainingTargets--;
+            }
+            Vertex currVertex = adjacencyList.get(curr);
+            for (String s : currVertex.getNeighbors()) {
+                int edgeWeight = currVertex.getWeight(s);
+                if (edgeWeight < 0) {
+                    throw new IllegalArgumentException("A path starting from source contains " +
+                            "negative edge weight");
+                }
+                if (!settled.contains(s)) {
+                    int newDistance = dist + edgeWeight;
+                    Integer old = distances.get(s);
+                    if (newDistance <= radius && (old == null || newDistance < old)) {
+                        distances.put(s, newDistance);
+                        queue.add(new AbstractMap.SimpleEntry<>(s, newDistance));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Kahn's algorithm, run in a single pass and cached until the graph next changes. Only
+     * changes made through the methods of this class are noticed; see {@link #getVertex}.
+     *
+     * @return an unmodifiable list of every vertex in topological order, or {@code null} if the
+     *         graph has a cycle
+     */
+    public List<String> topologicalOrder() {
+        if (topologicalVersion == version) {
+            return topologicalOrder;
+        }
+        HashMap<String, Integer> inDegree = new HashMap<>();
+        for (Map.Entry<String, Vertex> e : adjacencyList.entrySet()) {
+            inDegree.putIfAbsent(e.getKey(), 0);
+            for (String s : e.getValue().getNeighbors()) {
+                inDegree.merge(s, 1, Integer::sum);
+            }
+        }
+        ArrayList<String> order = new ArrayList<>(adjacencyList.size());
+        for (Map.Entry<String, Integer> e : inDegree.entrySet()) {
+            if (e.getValue() == 0) {
+                order.add(e.getKey());
+            }
+        }
+        // The order list doubles as the queue: everything after i is waiting to be visited
+        for (int i = 0; i < order.size(); i++) {
+            for (String s : adjacencyList.get(order.get(i)).getNeighbors()) {
+                if (inDegree.merge(s, -1, Integer::sum) == 0) {
+                    order.add(s);
+                }
+            }
+        }
+        topologicalOrder = order.size() == adjacencyList.size()
+                ? Collections.unmodifiableList(order) : null;
+        topologicalVersion = version;
+        return topologicalOrder;
+    }
+
+    /**
+     * @return {@code true} if the graph has no directed cycle
+     */
+    public boolean isAcyclic() {
+        return topologicalOrder() != null;
+    }
+
     /** GETTER METHODS */
 
     /**
@@ -328,7 +677,10 @@ public class Graph {
     }
 
     /**
-     * Gets vertex {@code u} from the graph
+     * Gets vertex {@code u} from the graph. Its search state may be changed freely, but its
+     * edges must only be changed through the methods of this class: edges added or removed
+     * directly on the vertex are not seen by {@link #topologicalOrder}, {@link #isAcyclic},
+     * {@link #dijkstra}, or subscribers.
      *
      * @param u a vertex
      * @return the vertex corresponding to u
@@ -338,7 +690,8 @@ public class Graph {
     }
 
     /**
-     * @return entry set of the HashMap of the adjacency list
+     * @return entry set of the HashMap of the adjacency list, whose vertices must not have their
+     *         edges changed directly (see {@link #getVertex})
      */
     public Set<Map.Entry<String, Vertex>> getAdjacencyList() {
         return adjacencyList.entrySet();
@@ -0,0 +1,676 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Whole-graph metrics: PageRank, betweenness centrality, and connected and strongly connected
+ * components. Each runs on the common fork/join pool, so it uses every core, over the arrays of
+ * a {@link GraphSnapshot}; the methods taking a {@link Graph} copy it first. Results map every
+ * vertex label to its value.
+ */
+public final class GraphAnalytics {
+
+    // Probability that the random surfer of PageRank follows an edge rather than jumping
+    private static final double DAMPING = 0.85;
+    // PageRank stops when the ranks change by less than this in total, or after MAX_ITERATIONS
+    private static final double TOLERANCE = 1e-10;
+    private static final int MAX_ITERATIONS = 100;
+    // Subproblems of the strongly connected components this small are solved by Tarjan's
+    // algorithm instead of being split further
+    private static final int SEQUENTIAL_SIZE = 1024;
+    // A forward-backward step whose pivot's component is less than 1/PROGRESS of its
+    // subproblem leaves what is left to Tarjan's algorithm, as splitting further would take
+    // off only a few vertices per step on a graph of many small components
+    private static final int PROGRESS = 8;
+
+    private GraphAnalytics() {
+    }
+
+    /** PAGERANK */
+
+    /**
+     * PageRank with damping 0.85. A vertex with no outgoing edges spreads its rank over every
+     * vertex. Edge weights are ignored.
+     *
+     * @param g a graph
+     * @return the rank of every vertex, summing to 1
+     */
+    public static Map<String, Double> pageRank(Graph g) {
+        return pageRank(GraphSnapshot.of(g));
+    }
+
+    /**
+     * PageRank with damping 0.85. A vertex with no outgoing edges spreads its rank over every
+     * vertex. Edge weights are ignored.
+     *
+     * Each iteration pulls: every vertex sums the shares of the vertices with edges into it,
+     * so vertices can be updated in parallel without any two threads writing the same entry.
+     *
+     * @param snapshot a graph
+     * @return the rank of every vertex, summing to 1
+     */
+    public static Map<String, Double> pageRank(GraphSnapshot snapshot) {
+        int n = snapshot.size();
+        ArrayAdjacency out = snapshot.edgeArrays();
+        ArrayAdjacency in = out.reversed();
+        double[] rank = new double[n];
+        double[] share = new double[n];
+        double[] next = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double[] current = rank;
+            double dangling = IntStream.range(0, n).parallel()
+                    .filter(v -> out.offsets[v] == out.offsets[v + 1])
+                    .mapToDouble(v -> current[v]).sum();
+            IntStream.range(0, n).parallel().forEach(v -> {
+                int degree = out.offsets[v + 1] - out.offsets[v];
+                share[v] = degree == 0 ? 0 : current[v] / degree;
+            });
+            double base = (1 - DAMPING) / n + DAMPING * dangling / n;
+            double[] updated = next;
+            double change = IntStream.range(0, n).parallel().mapToDouble(v -> {
+                double sum = 0;
+                for (int e = in.offsets[v]; e < in.offsets[v + 1]; e++) {
+                    sum += share[in.targets[e]];
+                }
+                updated[v] = base + DAMPING * sum;
+                return Math.abs(updated[v] - current[v]);
+            }).sum();
+            next = rank;
+            rank = updated;
+            if (change < TOLERANCE) {
+                break;
+            }
+        }
+        return toMap(snapshot, rank);
+    }
+
+    /** BETWEENNESS CENTRALITY */
+
+    /**
+     * Betweenness centrality, with shortest paths counted in edges.
+     *
+     * @param g a graph
+     * @return for every vertex v, the sum over all pairs of other vertices s and t of the
+     *         fraction of shortest paths from s to t that pass through v
+     */
+    public static Map<String, Double> betweenness(Graph g) {
+        return betweenness(GraphSnapshot.of(g));
+    }
+
+    /**
+     * Betweenness centrality, with shortest paths counted in edges, by Brandes' algorithm: one
+     * breadth-first search per source, then dependencies accumulated back up the search. Each
+     * worker takes sources one at a time and sums into an accumulator of its own, and the
+     * accumulators are added together at the end.
+     *
+     * @param snapshot a graph
+     * @return for every vertex v, the sum over all pairs of other vertices s and t of the
+     *         fraction of shortest paths from s to t that pass through v
+     */
+    public static Map<String, Double> betweenness(GraphSnapshot snapshot) {
+        int n = snapshot.size();
+        ArrayAdjacency out = snapshot.edgeArrays();
+        AtomicInteger nextSource = new AtomicInteger();
+        int workers = Math.max(1, Math.min(n, ForkJoinPool.getCommonPoolParallelism()));
+        double[] centrality = IntStream.range(0, workers).parallel()
+                .mapToObj(w -> accumulateBetweenness(out, nextSource))
+                .reduce(new double[n], (a, b) -> {
+                    double[] sum = new double[n];
+                    for (int v = 0; v < n; v++) {
+                        sum[v] = a[v] + b[v];
+                    }
+                    return sum;
+                });
+        return toMap(snapshot, centrality);
+    }
+
+    /**
+     * Helper method that runs Brandes' algorithm from sources taken from {@code nextSource}
+     * until there are none left.
+     *
+     * @return the dependencies of every vertex on the sources this worker took
+     */
+    private static double[] accumulateBetweenness(ArrayAdjacency out, AtomicInteger nextSource) {
+        int n = out.size();
+        double[] dependency = new double[n];
+        int[] distance = new int[n];
+        double[] paths = new double[n];
+        double[] delta = new double[n];
+        int[] order = new int[n];
+        Arrays.fill(distance, -1);
+        int s;
+        while ((s = nextSource.getAndIncrement()) < n) {
+            distance[s] = 0;
+            paths[s] = 1;
+            order[0] = s;
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                int v = order[head];
+                for (int e = out.offsets[v]; e < out.offsets[v + 1]; e++) {
+                    int w = out.targets[e];
+                    if (distance[w] < 0) {
+                        distance[w] = distance[v] + 1;
+                        order[tail++] = w;
+                    }
+                    if (distance[w] == distance[v] + 1) {
+                        paths[w] += paths[v];
+                    }
+                }
+            }
+            // Farthest vertices first, so every successor is done before its predecessors
+            for (int i = tail - 1; i >= 0; i--) {
+                int v = order[i];
+                double sum = 0;
+                for (int e = out.offsets[v]; e < out.offsets[v + 1]; e++) {
+                    int w = out.targets[e];
+                    if (distance[w] == distance[v] + 1) {
+                        sum += paths[v] / paths[w] * (1 + delta[w]);
+                    }
+                }
+                delta[v] = sum;
+                if (v != s) {
+                    dependency[v] += sum;
+                }
+            }
+            for (int i = 0; i < tail; i++) {
+                int v = order[i];
+                distance[v] = -1;
+                paths[v] = 0;
+                delta[v] = 0;
+            }
+        }
+        return dependency;
+    }
+
+    /** COMPONENTS */
+
+    /**
+     * Connected components, ignoring edge directions.
+     *
+     * @param g a graph
+     * @return the component of every vertex, numbered from 0 in the iteration order of the
+     *         graph
+     */
+    public static Map<String, Integer> components(Graph g) {
+        return components(GraphSnapshot.of(g));
+    }
+
+    /**
+     * Connected components, ignoring edge directions. Every edge is merged into a union-find
+     * forest in parallel; roots are linked with compare-and-set, always under the root with the
+     * smaller id, so concurrent links cannot form a cycle.
+     *
+     * @param snapshot a graph
+     * @return the component of every vertex, numbered from 0 in vertex id order
+     */
+    public static Map<String, Integer> components(GraphSnapshot snapshot) {
+        int n = snapshot.size();
+        ArrayAdjacency out = snapshot.edgeArrays();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) {
+            parent.set(v, v);
+        }
+        IntStream.range(0, n).parallel().forEach(u -> {
+            for (int e = out.offsets[u]; e < out.offsets[u + 1]; e++) {
+                union(parent, u, out.targets[e]);
+            }
+        });
+        // Every root is the smallest id in its component
+        int[] component = new int[n];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            int root = find(parent, v);
+            component[v] = root == v ? count++ : component[root];
+        }
+        return toMap(snapshot, component);
+    }
+
+    private static int find(AtomicIntegerArray parent, int v) {
+        while (true) {
+            int p = parent.get(v);
+            if (p == v) {
+                return v;
+            }
+            int grandparent = parent.get(p);
+            if (grandparent != p) {
+                // Path halving; losing the race only means the path stays longer
+                parent.compareAndSet(v, p, grandparent);
+            }
+            v = grandparent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray parent, int u, int v) {
+        while (true) {
+            int ru = find(parent, u);
+            int rv = find(parent, v);
+            if (ru == rv) {
+                return;
+            }
+            if (ru < rv) {
+                int swap = ru;
+                ru = rv;
+                rv = swap;
+            }
+            if (parent.compareAndSet(ru, ru, rv)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Strongly connected components.
+     *
+     * @param g a graph
+     * @return the strongly connected component of every vertex, numbered from 0 in the
+     *         iteration order of the graph
+     */
+    public static Map<String, Integer> strongComponents(Graph g) {
+        return strongComponents(GraphSnapshot.of(g));
+    }
+
+    /**
+     * Strongly connected components, by forward-backward decomposition. In every subproblem,
+     * vertices with no edges in or no edges out are first trimmed off as components of their
+     * own. Then the vertices reachable both forward and backward from a pivot form its
+     * component, and the vertices reachable only forward, only backward, or neither are
+     * independent subproblems, solved in parallel. Small subproblems, and those left when a
+     * pivot's component turns out small, are solved with Tarjan's algorithm.
+     *
+     * @param snapshot a graph
+     * @return the strongly connected component of every vertex, numbered from 0 in vertex id
+     *         order
+     */
+    public static Map<String, Integer> strongComponents(GraphSnapshot snapshot) {
+        ArrayAdjacency out = snapshot.edgeArrays();
+        StrongComponents scc = new StrongComponents(out, out.reversed());
+        if (snapshot.size() > 0) {
+            int[] all = IntStream.range(0, snapshot.size()).toArray();
+            ForkJoinPool.commonPool().invoke(scc.new Split(all, 0, true));
+        }
+        return toMap(snapshot, scc.numbered());
+    }
+
+    /**
+     * The state of one strongly connected components computation. Subproblems are told apart by
+     * color: a vertex belongs to the subproblem whose color it has, and vertices already in a
+     * component have color DONE. Parallel subproblems have disjoint vertices, so each vertex's
+     * entries are only ever written by one thread at a time.
+     */
+    private static final class StrongComponents {
+        private static final int DONE = -1;
+
+        private final int n;
+        private final ArrayAdjacency out;
+        private final ArrayAdjacency in;
+        private final int[] color;
+        private final int[] component;
+        private final AtomicInteger colors = new AtomicInteger();
+        private final AtomicInteger components = new AtomicInteger();
+        // Edges in and out of each vertex from vertices of its color, while trimming
+        private final int[] inDegree;
+        private final int[] outDegree;
+        // Tarjan's discovery index and low link, 0 if not yet discovered
+        private final int[] index;
+        private final int[] low;
+        private final boolean[] onStack;
+
+        StrongComponents(ArrayAdjacency out, ArrayAdjacency in) {
+            this.n = out.size();
+            this.out = out;
+            this.in = in;
+            this.color = new int[n];
+            this.component = new int[n];
+            this.inDegree = new int[n];
+            this.outDegree = new int[n];
+            this.index = new int[n];
+            this.low = new int[n];
+            this.onStack = new boolean[n];
+        }
+
+        /**
+         * Repeatedly takes off vertices of color {@code c} with no edges in or no edges out from
+         * the rest of that color, since each of them is a component by itself.
+         *
+         * @return the vertices that are left, all still with color {@code c}
+         */
+        int[] trim(int[] vertices, int c) {
+            int[] queue = new int[vertices.length];
+            int tail = 0;
+            for (int v : vertices) {
+                inDegree[v] = degree(in, v, c);
+                outDegree[v] = degree(out, v, c);
+            }
+            for (int v : vertices) {
+                if (inDegree[v] == 0 || outDegree[v] == 0) {
+                    color[v] = DONE;
+                    queue[tail++] = v;
+                }
+            }
+            if (tail == 0) {
+                return vertices;
+            }
+            for (int head = 0; head < tail; head++) {
+                int v = queue[head];
+                component[v] = components.getAndIncrement();
+                for (int e = out.offsets[v]; e < out.offsets[v + 1]; e++) {
+                    int w = out.targets[e];
+                    if (color[w] == c && --inDegree[w] == 0) {
+                        color[w] = DONE;
+                        queue[tail++] = w;
+                    }
+                }
+                for (int e = in.offsets[v]; e < in.offsets[v + 1]; e++) {
+                    int u = in.targets[e];
+                    if (color[u] == c && --outDegree[u] == 0) {
+                        color[u] = DONE;
+                        queue[tail++] = u;
+                    }
+                }
+            }
+            int[] remaining = new int[vertices.length - tail];
+            int count = 0;
+            for (int v : vertices) {
+                if (color[v] == c) {
+                    remaining[count++] = v;
+                }
+            }
+            return remaining;
+        }
+
+        /**
+         * Helper method that counts the edges of {@code v} in {@code edges} to vertices of color
+         * {@code c}.
+         */
+        private int degree(ArrayAdjacency edges, int v, int c) {
+            int count = 0;
+            for (int e = edges.offsets[v]; e < edges.offsets[v + 1]; e++) {
+                if (color[edges.targets[e]] == c) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return the component of every vertex, renumbered in order of their first vertex
+         */
+        int[] numbered() {
+            int[] renumber = new int[components.get()];
+            Arrays.fill(renumber, -1);
+            int count = 0;
+            int[] result = new int[n];
+            for (int v = 0; v < n; v++) {
+                if (renumber[component[v]] < 0) {
+                    renumber[component[v]] = count++;
+                }
+                result[v] = renumber[component[v]];
+            }
+            return result;
+        }
+
+        /**
+         * Forward-backward steps on the vertices of one color. Each step takes off the pivot's
+         * component and forks the vertices reached only forward and only backward. The vertices
+         * reached neither way are split into their weakly connected pieces: small pieces are
+         * solved together by Tarjan's algorithm, one large piece goes on in this loop, and any
+         * other large pieces are forked. Looping rather than recursing on what is left keeps
+         * the stack shallow on graphs of many small components.
+         */
+        private final class Split extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int[] vertices;
+            private final int c;
+            // Whether to take forward-backward steps, or go straight to Tarjan's algorithm
+            private final boolean divide;
+
+            Split(int[] vertices, int c, boolean divide) {
+                this.vertices = vertices;
+                this.c = c;
+                this.divide = divide;
+            }
+
+            @Override
+            protected void compute() {
+                List<Split> forked = new ArrayList<>();
+                int[] vertices = this.vertices;
+                int c = this.c;
+                boolean divide = this.divide;
+                while (vertices != null) {
+                    vertices = trim(vertices, c);
+                    if (!divide || vertices.length <= SEQUENTIAL_SIZE) {
+                        tarjan(vertices, vertices.length);
+                        break;
+                    }
+                    // A random pivot splits a chain of components in about half, on average
+                    int pivot = vertices[ThreadLocalRandom.current().nextInt(vertices.length)];
+                    int[] queue = new int[vertices.length];
+
+                    // Forward from the pivot
+                    int forward = colors.incrementAndGet();
+                    color[pivot] = forward;
+                    queue[0] = pivot;
+                    int tail = 1;
+                    for (int head = 0; head < tail; head++) {
+                        int v = queue[head];
+                        for (int e = out.offsets[v]; e < out.offsets[v + 1]; e++) {
+                            int w = out.targets[e];
+                            if (color[w] == c) {
+                                color[w] = forward;
+                                queue[tail++] = w;
+                            }
+                        }
+                    }
+
+                    // Backward from the pivot: reached vertices already reached forward are in
+                    // the pivot's component
+                    int backward = colors.incrementAndGet();
+                    int id = components.getAndIncrement();
+                    color[pivot] = DONE;
+                    component[pivot] = id;
+                    queue[0] = pivot;
+                    tail = 1;
+                    int found = 1;
+                    for (int head = 0; head < tail; head++) {
+                        int v = queue[head];
+                        for (int e = in.offsets[v]; e < in.offsets[v + 1]; e++) {
+                            int u = in.targets[e];
+                            if (color[u] == forward) {
+                                color[u] = DONE;
+                                component[u] = id;
+                                queue[tail++] = u;
+                                found++;
+                            } else if (color[u] == c) {
+                                color[u] = backward;
+                                queue[tail++] = u;
+                            }
+                        }
+                    }
+
+                    int forwardCount = 0;
+                    int backwardCount = 0;
+                    int restCount = 0;
+                    for (int v : vertices) {
+                        if (color[v] == forward) {
+                            forwardCount++;
+                        } else if (color[v] == backward) {
+                            backwardCount++;
+                        } else if (color[v] == c) {
+                            restCount++;
+                        }
+                    }
+                    int[] forwardOnly = new int[forwardCount];
+                    int[] backwardOnly = new int[backwardCount];
+                    int[] rest = new int[restCount];
+                    forwardCount = 0;
+                    backwardCount = 0;
+                    restCount = 0;
+                    for (int v : vertices) {
+                        if (color[v] == forward) {
+                            forwardOnly[forwardCount++] = v;
+                        } else if (color[v] == backward) {
+                            backwardOnly[backwardCount++] = v;
+                        } else if (color[v] == c) {
+                            rest[restCount++] = v;
+                        }
+                    }
+                    divide = found >= vertices.length / PROGRESS;
+                    spawn(forked, forwardOnly, forward, divide);
+                    spawn(forked, backwardOnly, backward, divide);
+
+                    // Split the rest into weakly connected pieces, each given its own color.
+                    // Small pieces pile up at the front of pieces; a large one is moved out
+                    vertices = null;
+                    int restColor = c;
+                    int[] pieces = queue;
+                    tail = 0;
+                    for (int root : rest) {
+                        if (color[root] != restColor) {
+                            continue;
+                        }
+                        int piece = colors.incrementAndGet();
+                        int first = tail;
+                        color[root] = piece;
+                        pieces[tail++] = root;
+                        for (int head = first; head < tail; head++) {
+                            int v = pieces[head];
+                            tail = spread(out, v, restColor, piece, pieces, tail);
+                            tail = spread(in, v, restColor, piece, pieces, tail);
+                        }
+                        if (tail - first > SEQUENTIAL_SIZE) {
+                            int[] large = Arrays.copyOfRange(pieces, first, tail);
+                            if (vertices == null) {
+                                vertices = large;
+                                c = piece;
+                            } else {
+                                spawn(forked, large, piece, divide);
+                            }
+                            tail = first;
+                        }
+                    }
+                    tarjan(pieces, tail);
+                }
+                for (Split split : forked) {
+                    split.join();
+                }
+            }
+        }
+
+        /**
+         * Helper method that forks a subproblem, unless it is empty.
+         */
+        private void spawn(List<Split> forked, int[] vertices, int c, boolean divide) {
+            if (vertices.length > 0) {
+                Split split = new Split(vertices, c, divide);
+                split.fork();
+                forked.add(split);
+            }
+        }
+
+        /**
+         * Helper method that gives color {@code piece} to every neighbor of {@code v} in
+         * {@code edges} with color {@code c}, adding them to {@code queue}.
+         *
+         * @return the new end of the queue
+         */
+        private int spread(ArrayAdjacency edges, int v, int c, int piece, int[] queue, int tail) {
+            for (int e = edges.offsets[v]; e < edges.offsets[v + 1]; e++) {
+                int w = edges.targets[e];
+                if (color[w] == c) {
+                    color[w] = piece;
+                    queue[tail++] = w;
+                }
+            }
+            return tail;
+        }
+
+        /**
+         * Helper method that runs Tarjan's algorithm, with an explicit stack, on the first
+         * {@code size} of {@code vertices}. Edges are only followed between vertices of the same
+         * color, so the vertices may come from several subproblems that share no edges.
+         */
+        private void tarjan(int[] vertices, int size) {
+            int[] callVertex = new int[size];
+            int[] callEdge = new int[size];
+            int[] stack = new int[size];
+            int stackSize = 0;
+            int counter = 0;
+            for (int i = 0; i < size; i++) {
+                int root = vertices[i];
+                int c = color[root];
+                if (c == DONE || index[root] != 0) {
+                    continue;
+                }
+                int top = 0;
+                callVertex[0] = root;
+                callEdge[0] = out.offsets[root];
+                index[root] = low[root] = ++counter;
+                stack[stackSize++] = root;
+                onStack[root] = true;
+                while (top >= 0) {
+                    int v = callVertex[top];
+                    if (callEdge[top] < out.offsets[v + 1]) {
+                        int w = out.targets[callEdge[top]++];
+                        if (color[w] != c) {
+                            continue;
+                        }
+                        if (index[w] == 0) {
+                            top++;
+                            callVertex[top] = w;
+                            callEdge[top] = out.offsets[w];
+                            index[w] = low[w] = ++counter;
+                            stack[stackSize++] = w;
+                            onStack[w] = true;
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], index[w]);
+                        }
+                        continue;
+                    }
+                    if (low[v] == index[v]) {
+                        int id = components.getAndIncrement();
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            color[w] = DONE;
+                            component[w] = id;
+                        } while (w != v);
+                    }
+                    top--;
+                    if (top >= 0) {
+                        int u = callVertex[top];
+                        low[u] = Math.min(low[u], low[v]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<String, Double> toMap(GraphSnapshot snapshot, double[] values) {
+        List<String> labels = snapshot.getVertices();
+        HashMap<String, Double> map = new HashMap<>();
+        for (int v = 0; v < values.length; v++) {
+            map.put(labels.get(v), values[v]);
+        }
+        return map;
+    }
+
+    private static Map<String, Integer> toMap(GraphSnapshot snapshot, int[] values) {
+        List<String> labels = snapshot.getVertices();
+        HashMap<String, Integer> map = new HashMap<>();
+        for (int v = 0; v < values.length; v++) {
+            map.put(labels.get(v), values[v]);
+        }
+        return map;
+    }
+}
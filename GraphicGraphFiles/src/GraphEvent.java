@@ -0,0 +1,144 @@
+/**
+ * A change to a {@link Graph}, as delivered to a {@link GraphListener}.
+ *
+ * Vertex events carry the vertex in {@link #getU}. Edge events carry the edge from
+ * {@link #getU} to {@link #getV}, its weight after the change in {@link #getWeight}, and its
+ * weight before the change in {@link #getPreviousWeight}. An {@link Type#OVERFLOW} event carries
+ * nothing: events were dropped, and the listener should rebuild whatever it derives from the
+ * graph.
+ */
+public final class GraphEvent {
+
+    public enum Type {
+        VERTEX_ADDED,
+        VERTEX_REMOVED,
+        EDGE_ADDED,
+        EDGE_REMOVED,
+        WEIGHT_CHANGED,
+        OVERFLOW
+    }
+
+    static final GraphEvent OVERFLOW = new GraphEvent(Type.OVERFLOW, null, null, 0, 0);
+
+    private final Type type;
+    private final String u;
+    private final String v;
+    private final int weight;
+    private final int previousWeight;
+
+    private GraphEvent(Type type, String u, String v, int weight, int previousWeight) {
+        this.type = type;
+        this.u = u;
+        this.v = v;
+        this.weight = weight;
+        this.previousWeight = previousWeight;
+    }
+
+    static GraphEvent vertexAdded(String u) {
+        return new GraphEvent(Type.VERTEX_ADDED, u, null, 0, 0);
+    }
+
+    static GraphEvent vertexRemoved(String u) {
+        return new GraphEvent(Type.VERTEX_REMOVED, u, null, 0, 0);
+    }
+
+    static GraphEvent edgeAdded(String u, String v, int weight) {
+        return new GraphEvent(Type.EDGE_ADDED, u, v, weight, 0);
+    }
+
+    static GraphEvent edgeRemoved(String u, String v, int weight) {
+        return new GraphEvent(Type.EDGE_REMOVED, u, v, 0, weight);
+    }
+
+    static GraphEvent weightChanged(String u, String v, int weight, int previousWeight) {
+        return new GraphEvent(Type.WEIGHT_CHANGED, u, v, weight, previousWeight);
+    }
+
+    /**
+     * Combines this pending event with a later event for the same vertex or edge into the one
+     * event with the same net effect.
+     *
+     * @param later an event for the same vertex or edge that happened after this one
+     * @return the combined event, or null if the two cancel out
+     */
+    GraphEvent then(GraphEvent later) {
+        switch (type) {
+            case VERTEX_ADDED:
+            case VERTEX_REMOVED:
+                // A vertex can only alternate between added and removed; its edges have their
+                // own events, so a pair leaves it as it was
+                return null;
+            case EDGE_ADDED:
+                if (later.type == Type.EDGE_REMOVED) {
+                    return null;
+                }
+                return edgeAdded(u, v, later.weight);
+            case EDGE_REMOVED:
+                if (later.weight == previousWeight) {
+                    return null;
+                }
+                return weightChanged(u, v, later.weight, previousWeight);
+            default:
+                if (later.type == Type.EDGE_REMOVED) {
+                    return edgeRemoved(u, v, previousWeight);
+                }
+                if (later.weight == previousWeight) {
+                    return null;
+                }
+                return weightChanged(u, v, later.weight, previousWeight);
+        }
+    }
+
+    /** GETTERS */
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the vertex of a vertex event, or the source of an edge event
+     */
+    public String getU() {
+        return u;
+    }
+
+    /**
+     * @return the target of an edge event, or null
+     */
+    public String getV() {
+        return v;
+    }
+
+    /**
+     * @return the weight of the edge after an {@code EDGE_ADDED} or {@code WEIGHT_CHANGED}
+     *         event, or 0
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the weight of the edge before an {@code EDGE_REMOVED} or {@code WEIGHT_CHANGED}
+     *         event, or 0
+     */
+    public int getPreviousWeight() {
+        return previousWeight;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case VERTEX_ADDED:
+            case VERTEX_REMOVED:
+                return type + " " + u;
+            case EDGE_ADDED:
+                return type + " " + u + "-" + v + " " + weight;
+            case EDGE_REMOVED:
+                return type + " " + u + "-" + v + " " + previousWeight;
+            case WEIGHT_CHANGED:
+                return type + " " + u + "-" + v + " " + previousWeight + " -> " + weight;
+            default:
+                return type.toString();
+        }
+    }
+}
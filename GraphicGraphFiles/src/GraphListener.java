@@ -0,0 +1,21 @@
+import java.util.List;
+
+/**
+ * Receives the changes made to a {@link Graph}. See {@link Graph#subscribe}.
+ */
+public interface GraphListener {
+
+    /**
+     * Called with a batch of changes, in the order they were made. Changes made between two
+     * batches are coalesced, so a vertex or edge appears at most once per batch, and a change
+     * that was undone before the batch was delivered does not appear at all.
+     *
+     * If the subscriber fell too far behind, the batch is a single {@code OVERFLOW} event
+     * instead, and the listener should rebuild from the graph itself. If the graph is changed
+     * on another thread while the listener rebuilds, those changes may show up both in what it
+     * reads and in the next batch.
+     *
+     * @param events the changes since the previous batch
+     */
+    void onEvents(List<GraphEvent> events);
+}
@@ -0,0 +1,733 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of a {@link Graph} with its edges in arrays indexed by vertex id, either plain
+ * (compressed sparse row form) or compressed with {@link #compress}. Nothing in a snapshot
+ * changes after it is built and every search keeps its state in arrays of its own, so any number
+ * of threads may query one snapshot at the same time, and the graph it was copied from may keep
+ * changing.
+ *
+ * Vertices are numbered in the iteration order of the graph, or in the order chosen by a
+ * {@link VertexOrdering} passed to {@link #reorder}. Either way, searches start new trees in the
+ * iteration order of the graph and, unless the edges are compressed, every adjacency list keeps
+ * its original neighbor order, so {@link #bfs} and {@link #dfs} return the same forests as the
+ * corresponding {@link Graph} methods, and {@link #dijkstra} finds the same distances as
+ * {@link Graph#dijkstra} (and the same tree whenever shortest paths are unique).
+ */
+public final class GraphSnapshot {
+
+    // Labels of the vertices, indexed by vertex id
+    private final String[] labels;
+    // Maps a label back to its vertex id
+    private final HashMap<String, Integer> ids;
+    // The edges, as plain arrays or compressed
+    private final Adjacency adjacency;
+    // Vertex ids in the iteration order of the copied graph, or null if that is the id order
+    private final int[] rootOrder;
+    // Vertex ids in topological order, or null if the graph has a cycle
+    private final int[] topologicalOrder;
+
+    private GraphSnapshot(String[] labels, Adjacency adjacency, int[] rootOrder) {
+        this.labels = labels;
+        this.ids = new HashMap<>();
+        for (int i = 0; i < labels.length; i++) {
+            ids.put(labels[i], i);
+        }
+        this.adjacency = adjacency;
+        this.rootOrder = rootOrder;
+        this.topologicalOrder = sortTopologically();
+    }
+
+    /**
+     * Copies a graph. The graph must not change while it is being copied.
+     *
+     * @param g a graph
+     * @return a snapshot of {@code g}
+     */
+    public static GraphSnapshot of(Graph g) {
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<String> order = new ArrayList<>();
+        int edgeCount = 0;
+        for (Map.Entry<String, Vertex> e : g.getAdjacencyList()) {
+            ids.put(e.getKey(), order.size());
+            order.add(e.getKey());
+            edgeCount += e.getValue().getNeighbors().size();
+        }
+        String[] labels = order.toArray(new String[0]);
+        int[] offsets = new int[labels.length + 1];
+        int[] targets = new int[edgeCount];
+        int[] weights = new int[edgeCount];
+        int edge = 0;
+        for (int i = 0; i < labels.length; i++) {
+            offsets[i] = edge;
+            Vertex vertex = g.getVertex(labels[i]);
+            for (String s : vertex.getNeighbors()) {
+                targets[edge] = ids.get(s);
+                weights[edge++] = vertex.getWeight(s);
+            }
+        }
+        offsets[labels.length] = edge;
+        return new GraphSnapshot(labels, new ArrayAdjacency(offsets, targets, weights), null);
+    }
+
+    /**
+     * Renumbers the vertices, usually so that vertices visited together are stored together.
+     * Labels are unchanged, and so are the results of every search unless the edges are
+     * compressed, since compressed neighbors are visited in order of vertex id.
+     *
+     * @param ordering chooses the new vertex order
+     * @return a snapshot of the same graph with the vertices numbered in the new order
+     * @throws IllegalArgumentException if the ordering does not return a permutation of the
+     *                                  vertex ids
+     */
+    public GraphSnapshot reorder(VertexOrdering ordering) {
+        int n = labels.length;
+        ArrayAdjacency edges = adjacency.toArrays();
+        int[] offsets = edges.offsets;
+        int[] targets = edges.targets;
+        int[] weights = edges.weights;
+        int[] order = ordering.order(offsets.clone(), targets.clone());
+        int[] newId = new int[n];
+        Arrays.fill(newId, -1);
+        if (order.length != n) {
+            throw new IllegalArgumentException("Ordering is not a permutation");
+        }
+        for (int i = 0; i < n; i++) {
+            if (order[i] < 0 || order[i] >= n || newId[order[i]] >= 0) {
+                throw new IllegalArgumentException("Ordering is not a permutation");
+            }
+            newId[order[i]] = i;
+        }
+        String[] newLabels = new String[n];
+        int[] newOffsets = new int[n + 1];
+        int[] newTargets = new int[targets.length];
+        int[] newWeights = new int[weights.length];
+        int edge = 0;
+        for (int i = 0; i < n; i++) {
+            int v = order[i];
+            newLabels[i] = labels[v];
+            newOffsets[i] = edge;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                newTargets[edge] = newId[targets[e]];
+                newWeights[edge++] = weights[e];
+            }
+        }
+        newOffsets[n] = edge;
+        int[] newRootOrder = new int[n];
+        for (int r = 0; r < n; r++) {
+            newRootOrder[r] = newId[rootAt(r)];
+        }
+        Adjacency newAdjacency = new ArrayAdjacency(newOffsets, newTargets, newWeights);
+        if (adjacency instanceof CompressedAdjacency) {
+            newAdjacency = CompressedAdjacency.of((ArrayAdjacency) newAdjacency);
+        }
+        return new GraphSnapshot(newLabels, newAdjacency, newRootOrder);
+    }
+
+    /**
+     * Compresses the edges, typically to a quarter to a half of their size, at the cost of some
+     * time decoding them during searches. The neighbors of each vertex are then kept in order of
+     * vertex id rather than in their original order, so BFS and DFS from a compressed snapshot
+     * may visit vertices in a different order, and return different forests, than
+     * {@link Graph#bfs} and {@link Graph#dfs}. Distances found by Dijkstra are unchanged.
+     * Compression works best on a snapshot reordered for locality first.
+     *
+     * @return a snapshot of the same graph with compressed edges, or this snapshot if its edges
+     *         are already compressed
+     */
+    public GraphSnapshot compress() {
+        if (adjacency instanceof CompressedAdjacency) {
+            return this;
+        }
+        return new GraphSnapshot(labels, CompressedAdjacency.of((ArrayAdjacency) adjacency),
+                rootOrder);
+    }
+
+    /**
+     * @return whether the edges of this snapshot are compressed
+     */
+    public boolean isCompressed() {
+        return adjacency instanceof CompressedAdjacency;
+    }
+
+    /**
+     * @return the number of bytes the edges of this snapshot take up
+     */
+    public long edgeBytes() {
+        return adjacency.byteCount();
+    }
+
+    /**
+     * @return the edges as plain arrays by vertex id, decompressed if need be, for algorithms
+     *         that work on the whole graph at once
+     */
+    ArrayAdjacency edgeArrays() {
+        return adjacency.toArrays();
+    }
+
+    /**
+     * Helper method that finds the vertex id of the {@code r}th vertex in the iteration order of
+     * the copied graph.
+     */
+    private int rootAt(int r) {
+        return rootOrder == null ? r : rootOrder[r];
+    }
+
+    /**
+     * Helper method that runs Kahn's algorithm over the vertex ids.
+     *
+     * @return the vertex ids in topological order, or null if the graph has a cycle
+     */
+    private int[] sortTopologically() {
+        int n = labels.length;
+        int[] inDegree = new int[n];
+        Adjacency.Cursor edges = adjacency.cursor();
+        for (int v = 0; v < n; v++) {
+            edges.reset(v);
+            while (edges.next()) {
+                inDegree[edges.target()]++;
+            }
+        }
+        int[] order = new int[n];
+        int tail = 0;
+        for (int r = 0; r < n; r++) {
+            if (inDegree[rootAt(r)] == 0) {
+                order[tail++] = rootAt(r);
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            edges.reset(order[head]);
+            while (edges.next()) {
+                if (--inDegree[edges.target()] == 0) {
+                    order[tail++] = edges.target();
+                }
+            }
+        }
+        return tail == n ? order : null;
+    }
+
+    /** GRAPH ALGORITHMS */
+
+    /**
+     * The Breadth-First Search algorithm.
+     *
+     * @param source the vertex the search will initially start at.
+     * @return the BFS forest, in which distances count edges from each vertex's root
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public Search bfsSearch(String source) {
+        int s = indexOf(source);
+        int n = labels.length;
+        Search search = new Search(SearchKind.BFS, n);
+        int[] queue = search.order;
+        Adjacency.Cursor edges = adjacency.cursor();
+        int tail = 0;
+        for (int r = -1; r < n; r++) {
+            int root = r < 0 ? s : rootAt(r);
+            if (search.distance[root] != Integer.MAX_VALUE) {
+                continue;
+            }
+            int head = tail;
+            search.distance[root] = 0;
+            queue[tail++] = root;
+            while (head < tail) {
+                int visited = queue[head++];
+                edges.reset(visited);
+                while (edges.next()) {
+                    int t = edges.target();
+                    if (search.distance[t] == Integer.MAX_VALUE) {
+                        search.distance[t] = search.distance[visited] + 1;
+                        search.parent[t] = visited;
+                        search.parentWeight[t] = edges.weight();
+                        queue[tail++] = t;
+                    }
+                }
+            }
+        }
+        search.count = tail;
+        return search;
+    }
+
+    /**
+     * The Depth-First Search, with an explicit stack in place of recursion.
+     *
+     * @param source the vertex that DFS starts at
+     * @return the DFS forest with start and finish times
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public Search dfsSearch(String source) {
+        int s = indexOf(source);
+        int n = labels.length;
+        Search search = new Search(SearchKind.DFS, n);
+        int[] stack = new int[n];
+        // Where the cursor was parked for each vertex on the stack but the top one
+        int[] parkedEdge = new int[n];
+        int[] parkedPosition = new int[n];
+        int[] parkedLast = new int[n];
+        Adjacency.Cursor edges = adjacency.cursor();
+        int time = 0;
+        int count = 0;
+        for (int r = -1; r < n; r++) {
+            int root = r < 0 ? s : rootAt(r);
+            if (search.start[root] != 0) {
+                continue;
+            }
+            int top = 0;
+            stack[0] = root;
+            search.start[root] = ++time;
+            search.distance[root] = 0;
+            search.order[count++] = root;
+            edges.reset(root);
+            while (top >= 0) {
+                int curr = stack[top];
+                boolean found = false;
+                while (edges.next()) {
+                    if (search.start[edges.target()] == 0) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (found) {
+                    int next = edges.target();
+                    parkedEdge[top] = edges.edge;
+                    parkedPosition[top] = edges.position;
+                    parkedLast[top] = edges.last;
+                    search.start[next] = ++time;
+                    search.distance[next] = search.distance[curr] + 1;
+                    search.parent[next] = curr;
+                    search.parentWeight[next] = 1;
+                    search.order[count++] = next;
+                    stack[++top] = next;
+                    edges.reset(next);
+                } else {
+                    search.finish[curr] = ++time;
+                    top--;
+                    if (top >= 0) {
+                        edges.resume(stack[top], parkedEdge[top], parkedPosition[top],
+                                parkedLast[top]);
+                    }
+                }
+            }
+        }
+        search.count = count;
+        return search;
+    }
+
+    /**
+     * Dijkstra's Algorithm. If the graph is acyclic, the tree is instead found by relaxing edges
+     * in topological order, which allows negative edge weights, as in {@link Graph#dijkstra}.
+     *
+     * @param source the root of the shortest path tree
+     * @return the shortest path tree rooted at {@code source}, which holds only the vertices
+     *         reachable from it, in the order they were settled
+     * @throws IllegalArgumentException if the source is not in the graph or a path starting
+     *                                  from it contains a negative edge weight
+     */
+    public Search dijkstraSearch(String source) {
+        int s = indexOf(source);
+        Search search = new Search(SearchKind.DIJKSTRA, labels.length);
+        search.distance[s] = 0;
+        if (topologicalOrder != null) {
+            relaxInOrder(search, s);
+        } else {
+            heapDijkstra(search, s);
+        }
+        return search;
+    }
+
+    /**
+     * Helper method that relaxes the edges out of every vertex reached from {@code s}, in
+     * topological order.
+     */
+    private void relaxInOrder(Search search, int s) {
+        Adjacency.Cursor edges = adjacency.cursor();
+        int count = 0;
+        int i = 0;
+        while (topologicalOrder[i] != s) {
+            i++;
+        }
+        for (; i < topologicalOrder.length; i++) {
+            int curr = topologicalOrder[i];
+            int dist = search.distance[curr];
+            if (dist == Integer.MAX_VALUE) {
+                continue;
+            }
+            search.order[count++] = curr;
+            edges.reset(curr);
+            while (edges.next()) {
+                int t = edges.target();
+                int weight = edges.weight();
+                int newDistance = dist + weight;
+                if (search.distance[t] == Integer.MAX_VALUE || newDistance < search.distance[t]) {
+                    search.distance[t] = newDistance;
+                    search.parent[t] = curr;
+                    search.parentWeight[t] = weight;
+                }
+            }
+        }
+        search.count = count;
+    }
+
+    /**
+     * Helper method that runs Dijkstra's algorithm from {@code s} with an indexed binary heap.
+     */
+    private void heapDijkstra(Search search, int s) {
+        int[] distance = search.distance;
+        int[] heap = new int[labels.length];
+        int[] heapIndex = new int[labels.length];
+        Arrays.fill(heapIndex, -1);
+        boolean[] settled = new boolean[labels.length];
+        Adjacency.Cursor edges = adjacency.cursor();
+        int heapSize = 1;
+        heap[0] = s;
+        heapIndex[s] = 0;
+        int count = 0;
+        while (heapSize > 0) {
+            int curr = heap[0];
+            heapIndex[curr] = -1;
+            int last = heap[--heapSize];
+            if (heapSize > 0) {
+                siftDown(heap, heapIndex, distance, heapSize, last);
+            }
+            settled[curr] = true;
+            search.order[count++] = curr;
+            int dist = distance[curr];
+            edges.reset(curr);
+            while (edges.next()) {
+                int weight = edges.weight();
+                if (weight < 0) {
+                    throw new IllegalArgumentException("A path starting from source contains " +
+                            "negative edge weight");
+                }
+                int t = edges.target();
+                int newDistance = dist + weight;
+                if (!settled[t] && newDistance < distance[t]) {
+                    distance[t] = newDistance;
+                    search.parent[t] = curr;
+                    search.parentWeight[t] = weight;
+                    if (heapIndex[t] < 0) {
+                        heapIndex[t] = heapSize++;
+                    }
+                    siftUp(heap, heapIndex, distance, heapIndex[t], t);
+                }
+            }
+        }
+        search.count = count;
+    }
+
+    private static void siftUp(int[] heap, int[] heapIndex, int[] distance, int index, int v) {
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            int p = heap[parentIndex];
+            if (distance[p] <= distance[v]) {
+                break;
+            }
+            heap[index] = p;
+            heapIndex[p] = index;
+            index = parentIndex;
+        }
+        heap[index] = v;
+        heapIndex[v] = index;
+    }
+
+    private static void siftDown(int[] heap, int[] heapIndex, int[] distance, int heapSize,
+                                 int v) {
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && distance[heap[child + 1]] < distance[heap[child]]) {
+                child++;
+            }
+            int c = heap[child];
+            if (distance[c] >= distance[v]) {
+                break;
+            }
+            heap[index] = c;
+            heapIndex[c] = index;
+            index = child;
+        }
+        heap[index] = v;
+        heapIndex[v] = index;
+    }
+
+    /**
+     * The Breadth-First Search algorithm.
+     *
+     * @param source the vertex the search will initially start at.
+     * @return a graph representation of the BFS forest
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public Graph bfs(String source) {
+        return bfsSearch(source).toForest();
+    }
+
+    /**
+     * The Depth-First Search.
+     *
+     * @param source the vertex that DFS starts at
+     * @return the graph representation of the DFS forest
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public Graph dfs(String source) {
+        return dfsSearch(source).toForest();
+    }
+
+    /**
+     * Dijkstra's Algorithm.
+     *
+     * @param source the root of the shortest path tree
+     * @return the shortest path tree rooted at {@code source}
+     * @throws IllegalArgumentException if the source is not in the graph or a path starting
+     *                                  from it contains a negative edge weight
+     */
+    public Graph dijkstra(String source) {
+        return dijkstraSearch(source).toForest();
+    }
+
+    /** GETTER METHODS */
+
+    /**
+     * @return the number of vertices in the graph
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * @return the number of edges in the graph
+     */
+    public int edgeCount() {
+        return adjacency.edgeCount();
+    }
+
+    /**
+     * Measures how far apart the ends of an edge are stored, which is how far a search jumps
+     * in memory to follow the edge.
+     *
+     * @return the mean over all edges of the number of bits in |u - v|, where u and v are the ids
+     *         of the ends
+     */
+    double averageGapBits() {
+        double sum = 0;
+        Adjacency.Cursor edges = adjacency.cursor();
+        for (int v = 0; v < labels.length; v++) {
+            edges.reset(v);
+            while (edges.next()) {
+                sum += 32 - Integer.numberOfLeadingZeros(Math.abs(edges.target() - v));
+            }
+        }
+        return edgeCount() == 0 ? 0 : sum / edgeCount();
+    }
+
+    /**
+     * @param u a vertex
+     * @return whether {@code u} is in the graph
+     */
+    public boolean containsVertex(String u) {
+        return ids.containsKey(u);
+    }
+
+    /**
+     * @return every vertex, in vertex id order: the index of a vertex in this list is its id
+     */
+    public List<String> getVertices() {
+        return Collections.unmodifiableList(Arrays.asList(labels));
+    }
+
+    private enum SearchKind {
+        BFS,
+        DFS,
+        DIJKSTRA
+    }
+
+    private int indexOf(String source) {
+        Integer id = ids.get(source);
+        if (id == null) {
+            throw new IllegalArgumentException("Source is not in graph");
+        }
+        return id;
+    }
+
+    /**
+     * The result of a search of a {@link GraphSnapshot}: the vertices it reached, in the order
+     * it reached them, and the tree edge into each of them.
+     */
+    public final class Search {
+
+        private final SearchKind kind;
+        // Reached vertex ids in visit order; only the first count are used
+        private final int[] order;
+        private int count;
+        // Per vertex id: tree parent or -1, weight of the tree edge into it, distance from the
+        // root of its tree (Integer.MAX_VALUE if unreached), and DFS start and finish times
+        private final int[] parent;
+        private final int[] parentWeight;
+        private final int[] distance;
+        private final int[] start;
+        private final int[] finish;
+
+        private Search(SearchKind kind, int n) {
+            this.kind = kind;
+            this.order = new int[n];
+            this.parent = new int[n];
+            this.parentWeight = new int[n];
+            this.distance = new int[n];
+            Arrays.fill(parent, -1);
+            Arrays.fill(distance, Integer.MAX_VALUE);
+            this.start = kind == SearchKind.DFS ? new int[n] : null;
+            this.finish = kind == SearchKind.DFS ? new int[n] : null;
+        }
+
+        /**
+         * @return the reached vertices in the order the search reached them
+         */
+        public List<String> getOrder() {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int i) {
+                    if (i < 0 || i >= count) {
+                        throw new IndexOutOfBoundsException("Index: " + i);
+                    }
+                    return labels[order[i]];
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+
+        /**
+         * @param v a vertex
+         * @return whether the search reached {@code v}
+         */
+        public boolean reached(String v) {
+            return distance[idOf(v)] != Integer.MAX_VALUE;
+        }
+
+        /**
+         * @param v a vertex
+         * @return the parent of {@code v} in the forest, or null if it is a root or unreached
+         */
+        public String getParent(String v) {
+            int p = parent[idOf(v)];
+            return p < 0 ? null : labels[p];
+        }
+
+        /**
+         * @param v a vertex
+         * @return the distance of {@code v} from the root of its tree, counted in edges for BFS
+         *         and DFS and in weight for Dijkstra, or Integer.MAX_VALUE if it is unreached
+         */
+        public int getDistance(String v) {
+            return distance[idOf(v)];
+        }
+
+        /**
+         * @param v a vertex
+         * @return the DFS start time of {@code v}, or 0 if this is not a DFS
+         */
+        public int getStart(String v) {
+            return start == null ? 0 : start[idOf(v)];
+        }
+
+        /**
+         * @param v a vertex
+         * @return the DFS finish time of {@code v}, or 0 if this is not a DFS
+         */
+        public int getFinish(String v) {
+            return finish == null ? 0 : finish[idOf(v)];
+        }
+
+        /**
+         * @param v a vertex
+         * @return the tree path from the root of {@code v}'s tree to {@code v}, or null if the
+         *         search did not reach {@code v}
+         */
+        public List<String> getPathTo(String v) {
+            int id = idOf(v);
+            if (distance[id] == Integer.MAX_VALUE) {
+                return null;
+            }
+            ArrayList<String> path = new ArrayList<>();
+            for (int u = id; u >= 0; u = parent[u]) {
+                path.add(labels[u]);
+            }
+            Collections.reverse(path);
+            return path;
+        }
+
+        /**
+         * @return the forest as a {@link Graph}, as returned by the {@link Graph} method of the
+         *         same search
+         */
+        public Graph toForest() {
+            Graph forest = new Graph();
+            for (int i = 0; i < count; i++) {
+                int v = order[i];
+                if (parent[v] < 0) {
+                    forest.addVertex(labels[v], true);
+                } else if (kind == SearchKind.DIJKSTRA) {
+                    forest.addVertex(labels[v], false);
+                } else {
+                    forest.addDirectedEdge(labels[parent[v]], labels[v], parentWeight[v]);
+                }
+                if (kind == SearchKind.DFS) {
+                    Vertex vertex = forest.getVertex(labels[v]);
+                    vertex.setStart(start[v]);
+                    vertex.setFinish(finish[v]);
+                }
+            }
+            if (kind == SearchKind.DIJKSTRA) {
+                // Graph adds the edges of a shortest path tree after all of its vertices
+                for (int i = 0; i < count; i++) {
+                    int v = order[i];
+                    if (parent[v] >= 0) {
+                        forest.addDirectedEdge(labels[parent[v]], labels[v], parentWeight[v]);
+                    }
+                }
+            }
+            return forest;
+        }
+
+        /* Access by vertex id, the index of a vertex in getVertices(), for bulk output */
+
+        int vertexAt(int i) {
+            return order[i];
+        }
+
+        int parentOf(int v) {
+            return parent[v];
+        }
+
+        int distanceOf(int v) {
+            return distance[v];
+        }
+
+        int startOf(int v) {
+            return start == null ? 0 : start[v];
+        }
+
+        int finishOf(int v) {
+            return finish == null ? 0 : finish[v];
+        }
+
+        private int idOf(String v) {
+            Integer id = ids.get(v);
+            if (id == null) {
+                throw new IllegalArgumentException("Vertex does not exist");
+            }
+            return id;
+        }
+    }
+}
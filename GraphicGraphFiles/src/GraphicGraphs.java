@@ -1,10 +1,12 @@
 import javax.swing.*;
 import java.awt.*;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.graphstream.graph.IdAlreadyInUseException;
 import org.graphstream.graph.implementations.*;
+import org.graphstream.ui.graphicGraph.GraphPosLengthUtils;
 import org.graphstream.ui.spriteManager.Sprite;
 import org.graphstream.ui.spriteManager.SpriteManager;
 import org.graphstream.ui.view.Viewer;
@@ -27,9 +29,15 @@ public class GraphicGraphs {
         DIJKSTRA
     }
 
+    private enum graphMetric {
+        PAGERANK,
+        BETWEENNESS,
+        COMPONENTS,
+        STRONG_COMPONENTS
+    }
+
     public static int SCREEN_WIDTH;
     public static int SCREEN_HEIGHT;
-    private static int ySegment = 0;
 
     // Main screen
     private static JFrame mainFrame;
@@ -65,6 +73,12 @@ public class GraphicGraphs {
     // User Graph
     private static Graph userGraph;
     private static MultiGraph userGraphView;
+    // Lays out the user graph off the UI thread and streams positions back to userGraphView
+    private static LayoutEngine layoutEngine;
+    // Delivers the changes of userGraph to userGraphView and layoutEngine on the UI thread
+    private static Subscription userGraphSubscription;
+    // Pending changes kept for the view before it is redrawn from scratch instead
+    private static final int VIEW_EVENT_CAPACITY = 100000;
 
     // Result Graph
     private static Graph algorithmGraph;
@@ -127,7 +141,19 @@ public class GraphicGraphs {
         userGraphView.addAttribute("ui.stylesheet", styleSheet);
         Viewer userGraphViewer = new Viewer(userGraphView,
                 Viewer.ThreadingModel.GRAPH_IN_ANOTHER_THREAD);
-        userGraphViewer.enableAutoLayout();
+        // GraphStream's own layout stalls on large graphs, so positions come from the engine
+        userGraphViewer.disableAutoLayout();
+        layoutEngine = LayoutEngine.start((labels, xy, count) -> {
+            for (int i = 0; i < count; i++) {
+                Node n = userGraphView.getNode(labels[i]);
+                // The vertex may have been removed since the engine moved it
+                if (n != null) {
+                    n.setAttribute("xy", xy[2 * i], xy[2 * i + 1]);
+                }
+            }
+        }, SwingUtilities::invokeLater);
+        userGraphSubscription = userGraph.subscribe(GraphicGraphs::updateUserGraphView,
+                SwingUtilities::invokeLater, VIEW_EVENT_CAPACITY);
         JPanel view = userGraphViewer.addDefaultView(false);
 
         // Underlying graph of the results
@@ -217,6 +243,17 @@ public class GraphicGraphs {
         JButton runDijkstraButton = new JButton("Dijkstra's");
         runDijkstraButton.addActionListener(e -> graphAlgorithm(graphAlgorithm.DIJKSTRA));
 
+        // Sets up buttons to compute a metric of every vertex of the current user graph
+        JButton pageRankButton = new JButton("PageRank");
+        pageRankButton.addActionListener(e -> graphMetric(graphMetric.PAGERANK));
+        JButton betweennessButton = new JButton("Betweenness");
+        betweennessButton.addActionListener(e -> graphMetric(graphMetric.BETWEENNESS));
+        JButton componentsButton = new JButton("Components");
+        componentsButton.addActionListener(e -> graphMetric(graphMetric.COMPONENTS));
+        JButton strongComponentsButton = new JButton("Strong Components");
+        strongComponentsButton.addActionListener(e ->
+                graphMetric(graphMetric.STRONG_COMPONENTS));
+
         // Sets up control panel and adds all buttons to it
         JPanel controlPanel = new JPanel();
         controlPanel.add(newGraphButton);
@@ -227,6 +264,10 @@ public class GraphicGraphs {
         controlPanel.add(runBFSButton);
         controlPanel.add(runDFSButton);
         controlPanel.add(runDijkstraButton);
+        controlPanel.add(pageRankButton);
+        controlPanel.add(betweennessButton);
+        controlPanel.add(componentsButton);
+        controlPanel.add(strongComponentsButton);
 
         // Adds all components to the main frame and makes it visible
         mainFrame.add(controlPanel, BorderLayout.NORTH);
@@ -241,9 +282,13 @@ public class GraphicGraphs {
 
     // Reset user graph to one with no vertices and edges
     private static void newGraph() {
+        userGraphSubscription.close();
         userGraph = new Graph();
         userGraphView.clear();
         userGraphView.setAttribute("ui.stylesheet", styleSheet);
+        layoutEngine.clear();
+        userGraphSubscription = userGraph.subscribe(GraphicGraphs::updateUserGraphView,
+                SwingUtilities::invokeLater, VIEW_EVENT_CAPACITY);
     }
 
     // Function that edit the user graph depending on which button is pressed
@@ -272,11 +317,9 @@ public class GraphicGraphs {
                     try {
                         // Gets user input
                         String label = singleVertex1.getText();
+                        // The Graph Representation is updated from the user graph's change events
                         if (!userGraph.addVertex(label, false)) {
                             throw new IllegalArgumentException("Vertex is already in graph");
-                        } else {
-                            // If a vertex is successfully added into the User Graph. add it to the Graph Representation too
-                            addVertexToMultiGraph(label);
                         }
                     } catch (IllegalArgumentException i) {
                         // Displays a popup that shows the error
@@ -299,13 +342,6 @@ public class GraphicGraphs {
                         int edgeWeight = Integer.parseInt(w);
                         if (!userGraph.addDirectedEdge(u, v, edgeWeight)) {
                             throw new IllegalArgumentException("Edge is already in graph");
-                        } else {
-                            // If an edge is added to the graph, add the corresponding vertices to Graph Representation
-                            // if they are not in the graph already and then add the edge.
-                            addVertexToMultiGraph(u);
-                            addVertexToMultiGraph(v);
-                            Edge e = userGraphView.addEdge(u + "." + v, u, v, true);
-                            e.setAttribute("ui.label", w);
                         }
                     } catch (NumberFormatException n) {
                         JOptionPane.showMessageDialog(errorMessage, "Weight value is not an integer");
@@ -326,9 +362,6 @@ public class GraphicGraphs {
                         String v = vTextField2.getText();
                         if (!userGraph.removeDirectedEdge(u, v)) {
                             throw new IllegalArgumentException("Edge is not in graph");
-                        } else {
-                            // If an edge is successfully removed, remove it from the Graph Representation too.
-                            userGraphView.removeEdge(u + "." + v);
                         }
                     } catch (IllegalArgumentException i) {
                         JOptionPane.showMessageDialog(errorMessage, i.getMessage());
@@ -347,9 +380,6 @@ public class GraphicGraphs {
                         String label = singleVertex2.getText();
                         if (!userGraph.removeVertex(label)) {
                             throw new IllegalArgumentException("Vertex is not in graph");
-                        } else {
-                            // If a vertex is successfully removed, remove it from the Graph Representation too.
-                            userGraphView.removeNode(label);
                         }
                     } catch (IllegalArgumentException i) {
                         JOptionPane.showMessageDialog(errorMessage, i.getMessage());
@@ -358,11 +388,63 @@ public class GraphicGraphs {
         }
     }
 
+    // Applies a batch of changes of the user graph to its Graph Representation and layout
+    private static void updateUserGraphView(List<GraphEvent> events) {
+        for (GraphEvent e : events) {
+            String u = e.getU();
+            String v = e.getV();
+            switch (e.getType()) {
+                case VERTEX_ADDED:
+                    addVertexToMultiGraph(u);
+                    break;
+                case VERTEX_REMOVED:
+                    // The vertex's edges were removed by earlier events
+                    userGraphView.removeNode(u);
+                    layoutEngine.removeVertex(u);
+                    break;
+                case EDGE_ADDED:
+                    Edge added = userGraphView.addEdge(u + "." + v, u, v, true);
+                    added.setAttribute("ui.label", e.getWeight());
+                    layoutEngine.addEdge(u, v);
+                    break;
+                case EDGE_REMOVED:
+                    userGraphView.removeEdge(u + "." + v);
+                    layoutEngine.removeEdge(u, v);
+                    break;
+                case WEIGHT_CHANGED:
+                    userGraphView.getEdge(u + "." + v).setAttribute("ui.label", e.getWeight());
+                    break;
+                default:
+                    // Changes were dropped, so redraw the whole user graph
+                    redrawUserGraph();
+            }
+        }
+    }
+
+    // Helper that rebuilds the Graph Representation and layout from the user graph
+    private static void redrawUserGraph() {
+        userGraphView.clear();
+        userGraphView.setAttribute("ui.stylesheet", styleSheet);
+        layoutEngine.clear();
+        for (Map.Entry<String, Vertex> entry : userGraph.getAdjacencyList()) {
+            addVertexToMultiGraph(entry.getKey());
+        }
+        for (Map.Entry<String, Vertex> entry : userGraph.getAdjacencyList()) {
+            String u = entry.getKey();
+            for (String v : entry.getValue().getNeighbors()) {
+                Edge added = userGraphView.addEdge(u + "." + v, u, v, true);
+                added.setAttribute("ui.label", entry.getValue().getWeight(v));
+                layoutEngine.addEdge(u, v);
+            }
+        }
+    }
+
     // Helper method to add vertex to the User Graph representation
     private static void addVertexToMultiGraph(String label) {
         try {
             Node n = userGraphView.addNode(label);
             n.addAttribute("ui.label", label);
+            layoutEngine.addVertex(label);
         } catch (IdAlreadyInUseException ignored) { }
     }
 
@@ -424,56 +506,99 @@ public class GraphicGraphs {
         algorithmGraphView.clear();
         algorithmGraphView.setAttribute("ui.stylesheet", styleSheet);
         spriteManager = new SpriteManager(algorithmGraphView);
-        Set<Map.Entry<String, Vertex>> roots = algorithmGraph.getRoots();
-        // Splits the result screen into equal sized segments horizontally (1 for each rooted tree)
-        int xSegment = SCREEN_WIDTH / roots.size();
-        // Splits the result screen into equal sized segments vertically (1 for each level in the tree)
-        // Divide by number of nodes of the graph since height of tree is upper bounded by that
-        ySegment = SCREEN_HEIGHT / algorithmGraph.size();
-        // Keeps track of which segment the algorithm is on
-        int count = 0;
-        for (Map.Entry<String, Vertex> r : roots) {
-            drawTree(count * xSegment, (count + 1) * xSegment, 0, r.getKey(), null, alg);
-            count++;
+        // Places every vertex with a tidy tree layout, so the drawing stays readable however
+        // deep or wide the forest is (one unit between neighbors, one level per unit down)
+        TreeLayout layout = TreeLayout.of(algorithmGraph);
+        for (int i = 0; i < layout.size(); i++) {
+            String currNode = layout.getLabel(i);
+            Node n = algorithmGraphView.addNode(currNode);
+            n.setAttribute("ui.label", currNode);
+            n.setAttribute("xy", layout.getX(i), -layout.getDepth(i));
+            // If this is drawing a DFS tree, display the start and finish times.
+            if (alg == graphAlgorithm.DFS) {
+                Vertex curr = algorithmGraph.getVertex(currNode);
+                Sprite times = spriteManager.addSprite(currNode + "times");
+                times.attachToNode(currNode);
+                times.setPosition(15, 0, 45);
+                times.setAttribute("ui.label", curr.getStart() + "/" + curr.getFinish());
+            }
+        }
+        // Parents come before their children in the layout, so both ends of every edge exist
+        for (int i = 0; i < layout.size(); i++) {
+            int p = layout.getParent(i);
+            if (p >= 0) {
+                String parent = layout.getLabel(p);
+                String currNode = layout.getLabel(i);
+                Edge e = algorithmGraphView.addEdge(parent + "." + currNode, parent, currNode,
+                        true);
+                // If this is drawing the shortest path tree, display the edge weights.
+                if (alg == graphAlgorithm.DIJKSTRA) {
+                    e.setAttribute("ui.label", algorithmGraph.getWeight(parent, currNode));
+                }
+            }
         }
     }
 
-    // Recursive helper to draw a single tree
-    private static void drawTree(int startX, int endX, int level, String currNode, String parent, graphAlgorithm alg) {
-        // Adds current vertex to the middle of startX and endX (horizontal) and the specific ySegment (based on level)
-        Node n = algorithmGraphView.addNode(currNode);
-        n.setAttribute("ui.label", currNode);
-        n.setAttribute("xy", (startX + endX) / 2, (-level * ySegment));
-        Vertex curr = algorithmGraph.getVertex(currNode);
-        // If this is drawing a DFS tree, display the start and finish times.
-        if (alg == graphAlgorithm.DFS) {
-            Sprite times = spriteManager.addSprite(currNode + "times");
-            times.attachToNode(currNode);
-            times.setPosition(15, 0, 45);
-            times.setAttribute("ui.label", curr.getStart() + "/" + curr.getFinish());
+    // Function that computes a metric of every vertex of the user graph and displays it
+    private static void graphMetric(graphMetric metric) {
+        JDialog errorMessage = new JDialog(mainFrame, "Error", true);
+        if (userGraph.size() == 0) {
+            JOptionPane.showMessageDialog(errorMessage, "Graph is empty, silly!");
+            return;
         }
-        // If the current node is not a root node, add an edge from its parent to itself.
-        if (parent != null) {
-            Edge e = algorithmGraphView.addEdge(parent + "." + currNode, parent, currNode, true);
-            // If this is drawing the shortest path tree, display the edge weights.
-            if (alg == graphAlgorithm.DIJKSTRA) {
-                e.setAttribute("ui.label", algorithmGraph.getWeight(parent, currNode));
-            }
+        GraphSnapshot snapshot = GraphSnapshot.of(userGraph);
+        Map<String, String> values = new HashMap<>();
+        switch (metric) {
+            case PAGERANK:
+                GraphAnalytics.pageRank(snapshot).forEach((v, rank) ->
+                        values.put(v, String.format("%.4f", rank)));
+                break;
+            case BETWEENNESS:
+                GraphAnalytics.betweenness(snapshot).forEach((v, centrality) ->
+                        values.put(v, String.format("%.1f", centrality)));
+                break;
+            case COMPONENTS:
+                GraphAnalytics.components(snapshot).forEach((v, component) ->
+                        values.put(v, "C" + component));
+                break;
+            case STRONG_COMPONENTS:
+                GraphAnalytics.strongComponents(snapshot).forEach((v, component) ->
+                        values.put(v, "S" + component));
+        }
+        // Updates the result representation
+        drawMetric(values);
+
+        // Shows the result
+        resultFrame.setVisible(true);
+    }
+
+    // Helper that draws the user graph with the value of a metric next to every vertex
+    private static void drawMetric(Map<String, String> values) {
+        // Resets the result the graph
+        algorithmGraphView.clear();
+        algorithmGraphView.setAttribute("ui.stylesheet", styleSheet);
+        spriteManager = new SpriteManager(algorithmGraphView);
+        // Every vertex keeps its place in the user graph view, so the two can be compared
+        for (Map.Entry<String, Vertex> entry : userGraph.getAdjacencyList()) {
+            String currNode = entry.getKey();
+            Node shown = userGraphView.getNode(currNode);
+            // The view is updated later than the graph, so a vertex just added may not be in it
+            double[] xy = shown != null ? GraphPosLengthUtils.nodePosition(shown)
+                    : new double[]{0, 0};
+            Node n = algorithmGraphView.addNode(currNode);
+            n.setAttribute("ui.label", currNode);
+            n.setAttribute("xy", xy[0], xy[1]);
+            Sprite value = spriteManager.addSprite(currNode + "value");
+            value.attachToNode(currNode);
+            value.setPosition(15, 0, 45);
+            value.setAttribute("ui.label", values.get(currNode));
         }
-        Set<String> children = curr.getNeighbors();
-        if (children.size() != 0) {
-            // Splits the section between startX and endX into even horizontal segments (1 for each child of the current vertex)
-            int xSegment = (endX - startX) / children.size();
-            // Keeps track of which segment the algorithm is on
-            int count = 0;
-            for (String s : children) {
-                // Recursively calls drawTree on this vertex's children
-                drawTree(startX + count * xSegment, startX + (count + 1) * xSegment,
-                        level + 1, s, currNode, alg);
-                count++;
+        for (Map.Entry<String, Vertex> entry : userGraph.getAdjacencyList()) {
+            String u = entry.getKey();
+            for (String v : entry.getValue().getNeighbors()) {
+                algorithmGraphView.addEdge(u + "." + v, u, v, true);
             }
         }
     }
 
 }
-
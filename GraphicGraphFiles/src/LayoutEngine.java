@@ -0,0 +1,941 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A force-directed layout for large graphs that runs on its own thread. Edits are queued with
+ * {@link #addVertex}, {@link #addEdge}, {@link #removeEdge}, {@link #removeVertex}, and
+ * {@link #clear}, and positions are streamed back in batches to a {@link PositionSink}.
+ *
+ * Forces follow Fruchterman and Reingold, with the repulsion between all pairs approximated by
+ * a Barnes-Hut quadtree, so an iteration costs O(n log n) rather than O(n^2). Edge directions
+ * and weights are ignored. When many vertices arrive at once the graph is laid out multilevel:
+ * it is repeatedly coarsened by heavy-edge matching, the smallest graph is laid out from
+ * scratch, and each finer graph starts from the positions of the one above it. A small edit
+ * only heats the vertices next to it, so the layout settles again in a few cheap iterations.
+ */
+public class LayoutEngine implements AutoCloseable {
+
+    /**
+     * Receives positions from a {@link LayoutEngine}.
+     */
+    public interface PositionSink {
+        /**
+         * Moves vertices. Vertex {@code labels[i]} is now at
+         * ({@code xy[2 * i]}, {@code xy[2 * i + 1]}).
+         *
+         * @param labels the labels of the vertices that moved
+         * @param xy their new positions
+         * @param count the number of vertices in this batch
+         */
+        void accept(String[] labels, double[] xy, int count);
+    }
+
+    // Natural length of an edge
+    private static final double K = 1.0;
+    // Barnes-Hut opening angle: a cell is treated as one body when size / distance < THETA
+    private static final double THETA = 0.8;
+    // Pull towards the origin, so disconnected pieces stay in view
+    private static final double GRAVITY = 0.02;
+    // The largest step a vertex may take is its heat, which cools every iteration
+    private static final double COOLING = 0.9;
+    // The coarsest level is tiny, so it can afford to cool slowly and untangle
+    private static final double COARSEST_COOLING = 0.98;
+    // The levels in between start close to their final shape, so they cool quickly
+    private static final double REFINE_COOLING = 0.85;
+    private static final double MIN_HEAT = 0.005;
+    private static final double NEW_HEAT = 1.0;
+    private static final double EDIT_HEAT = 0.5;
+    // Multilevel layout is used when more than this many vertices, or a quarter of the graph,
+    // arrive between two iterations; coarsening stops at COARSEST vertices or when it stalls
+    private static final int MULTILEVEL_MIN = 64;
+    private static final int COARSEST = 50;
+    // While few vertices are hot the quadtree is only rebuilt every few iterations
+    private static final int REBUILD_EVERY = 8;
+    // Positions are sent at most once per frame, in batches of at most BATCH vertices
+    private static final long FRAME_NANOS = 40_000_000L;
+    private static final int BATCH = 2048;
+    // How long the queue must stay empty before a burst of edits is compiled
+    private static final long SETTLE_NANOS = 5_000_000L;
+
+    private final PositionSink sink;
+    private final Executor delivery;
+    private final BlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+    // Batches handed to the delivery executor that have not been applied yet
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Thread worker;
+    private final Random random = new Random(121);
+
+    // Everything below is only touched by the worker thread
+    // Vertices are numbered densely; removing one moves the last vertex into its slot
+    private final ArrayList<String> labels = new ArrayList<>();
+    private final HashMap<String, Integer> index = new HashMap<>();
+    // Directed edges as added, and the undirected neighbors of every vertex with multiplicity
+    private final HashMap<String, HashSet<String>> successors = new HashMap<>();
+    private final HashMap<String, HashMap<String, Integer>> neighbors = new HashMap<>();
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private double[] heat = new double[16];
+    private boolean[] placed = new boolean[16];
+    private boolean[] moved = new boolean[16];
+    // Vertices to heat once the graph is recompiled
+    private final HashSet<String> touched = new HashSet<>();
+    private boolean structureChanged = false;
+    // The graph compiled for iterating
+    private Level level;
+    private final QuadTree tree = new QuadTree();
+    private boolean treeStale = true;
+    private int sinceRebuild = 0;
+    private boolean framePending = false;
+    private long lastFrame = 0;
+
+    private LayoutEngine(PositionSink sink, Executor delivery) {
+        this.sink = sink;
+        this.delivery = delivery;
+        this.worker = new Thread(this::run, "layout-engine");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Starts a layout engine for an empty graph.
+     *
+     * @param sink where positions are sent
+     * @param delivery the executor that calls {@code sink}, such as
+     *                 {@code SwingUtilities::invokeLater}; the next frame is not sent until
+     *                 every batch of the previous one has been delivered
+     * @return the running engine
+     */
+    public static LayoutEngine start(PositionSink sink, Executor delivery) {
+        LayoutEngine engine = new LayoutEngine(sink, delivery);
+        engine.worker.start();
+        return engine;
+    }
+
+    /** EDITS */
+
+    /**
+     * Adds a vertex to the layout. Does nothing if it is already there.
+     *
+     * @param label the label of the vertex
+     */
+    public void addVertex(String label) {
+        commands.add(new Command(Op.ADD_VERTEX, label, null));
+    }
+
+    /**
+     * Removes a vertex and every edge touching it from the layout. Does nothing if it is not
+     * there.
+     *
+     * @param label the label of the vertex
+     */
+    public void removeVertex(String label) {
+        commands.add(new Command(Op.REMOVE_VERTEX, label, null));
+    }
+
+    /**
+     * Adds a directed edge to the layout, adding its endpoints if they are not there yet. Does
+     * nothing if the edge is already there.
+     *
+     * @param u the source vertex
+     * @param v the target vertex
+     */
+    public void addEdge(String u, String v) {
+        commands.add(new Command(Op.ADD_EDGE, u, v));
+    }
+
+    /**
+     * Removes a directed edge from the layout. Does nothing if it is not there.
+     *
+     * @param u the source vertex
+     * @param v the target vertex
+     */
+    public void removeEdge(String u, String v) {
+        commands.add(new Command(Op.REMOVE_EDGE, u, v));
+    }
+
+    /**
+     * Removes every vertex and edge from the layout.
+     */
+    public void clear() {
+        commands.add(new Command(Op.CLEAR, null, null));
+    }
+
+    /**
+     * Stops the layout thread. Edits queued before this call are applied but their positions
+     * may not be sent.
+     */
+    @Override
+    public void close() {
+        commands.add(new Command(Op.STOP, null, null));
+        boolean interrupted = false;
+        while (true) {
+            try {
+                worker.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** LAYOUT THREAD */
+
+    private void run() {
+        try {
+            while (true) {
+                Command c;
+                if (isHot() || structureChanged) {
+                    c = commands.poll();
+                } else if (framePending) {
+                    c = commands.poll(FRAME_NANOS, TimeUnit.NANOSECONDS);
+                } else {
+                    c = commands.take();
+                }
+                while (c != null) {
+                    if (c.op == Op.STOP) {
+                        return;
+                    }
+                    apply(c);
+                    c = commands.poll();
+                    if (c == null && structureChanged) {
+                        // Recompiling costs O(n + m), so wait a moment for the rest of a burst
+                        c = commands.poll(SETTLE_NANOS, TimeUnit.NANOSECONDS);
+                    }
+                }
+                if (structureChanged) {
+                    compile();
+                }
+                if (isHot()) {
+                    iterate();
+                }
+                if (framePending && (!isHot()
+                        || System.nanoTime() - lastFrame >= FRAME_NANOS)) {
+                    sendFrame();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Helper method that applies one edit to the graph. Positions are not touched until the
+     * graph is recompiled.
+     */
+    private void apply(Command c) {
+        switch (c.op) {
+            case ADD_VERTEX:
+                addLabel(c.u);
+                break;
+            case ADD_EDGE:
+                if (c.u.equals(c.v)) {
+                    return;
+                }
+                addLabel(c.u);
+                addLabel(c.v);
+                if (successors.get(c.u).add(c.v)) {
+                    neighbors.get(c.u).merge(c.v, 1, Integer::sum);
+                    neighbors.get(c.v).merge(c.u, 1, Integer::sum);
+                    touched.add(c.u);
+                    touched.add(c.v);
+                    structureChanged = true;
+                }
+                break;
+            case REMOVE_EDGE:
+                if (successors.containsKey(c.u) && successors.get(c.u).remove(c.v)) {
+                    unlink(c.u, c.v);
+                    touched.add(c.u);
+                    touched.add(c.v);
+                    structureChanged = true;
+                }
+                break;
+            case REMOVE_VERTEX:
+                Integer i = index.remove(c.u);
+                if (i == null) {
+                    return;
+                }
+                successors.remove(c.u);
+                for (String w : neighbors.remove(c.u).keySet()) {
+                    neighbors.get(w).remove(c.u);
+                    successors.get(w).remove(c.u);
+                    touched.add(w);
+                }
+                touched.remove(c.u);
+                int last = labels.size() - 1;
+                String moving = labels.remove(last);
+                if (i != last) {
+                    labels.set(i, moving);
+                    index.put(moving, i);
+                    x[i] = x[last];
+                    y[i] = y[last];
+                    heat[i] = heat[last];
+                    placed[i] = placed[last];
+                    moved[i] = moved[last];
+                }
+                structureChanged = true;
+                break;
+            case CLEAR:
+                labels.clear();
+                index.clear();
+                successors.clear();
+                neighbors.clear();
+                touched.clear();
+                level = null;
+                framePending = false;
+                structureChanged = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addLabel(String label) {
+        if (index.containsKey(label)) {
+            return;
+        }
+        int i = labels.size();
+        if (i == x.length) {
+            int capacity = 2 * i;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            heat = Arrays.copyOf(heat, capacity);
+            placed = Arrays.copyOf(placed, capacity);
+            moved = Arrays.copyOf(moved, capacity);
+        }
+        labels.add(label);
+        index.put(label, i);
+        neighbors.put(label, new HashMap<>());
+        successors.put(label, new HashSet<>());
+        heat[i] = 0;
+        placed[i] = false;
+        moved[i] = false;
+        structureChanged = true;
+    }
+
+    private void unlink(String u, String v) {
+        HashMap<String, Integer> un = neighbors.get(u);
+        HashMap<String, Integer> vn = neighbors.get(v);
+        if (un.merge(v, -1, Integer::sum) == 0) {
+            un.remove(v);
+        }
+        if (vn.merge(u, -1, Integer::sum) == 0) {
+            vn.remove(u);
+        }
+    }
+
+    /**
+     * Helper method that rebuilds the compiled graph after edits, places new vertices, and
+     * heats the neighborhood of every edit. A large batch of new vertices is laid out
+     * multilevel instead.
+     */
+    private void compile() {
+        structureChanged = false;
+        treeStale = true;
+        int n = labels.size();
+        if (n == 0) {
+            level = null;
+            return;
+        }
+        int[] start = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            start[i + 1] = start[i] + neighbors.get(labels.get(i)).size();
+        }
+        int[] adj = new int[start[n]];
+        int[] weight = new int[start[n]];
+        int unplaced = 0;
+        for (int i = 0; i < n; i++) {
+            int e = start[i];
+            for (Map.Entry<String, Integer> w : neighbors.get(labels.get(i)).entrySet()) {
+                adj[e] = index.get(w.getKey());
+                weight[e++] = w.getValue();
+            }
+            if (!placed[i]) {
+                unplaced++;
+            }
+        }
+        double[] mass = new double[n];
+        Arrays.fill(mass, 1);
+        level = new Level(n, start, adj, weight, mass);
+
+        if (unplaced > MULTILEVEL_MIN && unplaced > n / 4) {
+            multilevel();
+        } else {
+            for (int i = 0; i < n; i++) {
+                if (!placed[i]) {
+                    placeNear(i);
+                }
+            }
+            for (String label : touched) {
+                int i = index.get(label);
+                heat[i] = Math.max(heat[i], EDIT_HEAT);
+                for (int e = start[i]; e < start[i + 1]; e++) {
+                    heat[adj[e]] = Math.max(heat[adj[e]], EDIT_HEAT / 2);
+                }
+            }
+        }
+        touched.clear();
+    }
+
+    /**
+     * Helper method that puts a new vertex next to its placed neighbors, or somewhere in the
+     * drawing if it has none.
+     */
+    private void placeNear(int i) {
+        double sx = 0;
+        double sy = 0;
+        int count = 0;
+        for (int e = level.start[i]; e < level.start[i + 1]; e++) {
+            int j = level.adj[e];
+            if (placed[j]) {
+                sx += x[j];
+                sy += y[j];
+                count++;
+            }
+        }
+        if (count > 0) {
+            x[i] = sx / count + K * (random.nextDouble() - 0.5);
+            y[i] = sy / count + K * (random.nextDouble() - 0.5);
+        } else {
+            double spread = K * Math.sqrt(level.n);
+            x[i] = spread * (random.nextDouble() - 0.5);
+            y[i] = spread * (random.nextDouble() - 0.5);
+        }
+        placed[i] = true;
+        moved[i] = true;
+        framePending = true;
+        heat[i] = NEW_HEAT;
+    }
+
+    /**
+     * Helper method that lays out the whole graph multilevel. The finest level is only
+     * prolonged here and left hot, so it is refined by {@link #iterate} while edits and
+     * frames keep flowing.
+     */
+    private void multilevel() {
+        ArrayList<Level> levels = new ArrayList<>();
+        levels.add(level);
+        Level current = level;
+        while (current.n > COARSEST) {
+            Level coarse = coarsen(current);
+            if (coarse.n > 0.9 * current.n) {
+                break;
+            }
+            levels.add(coarse);
+            current = coarse;
+        }
+
+        // Lay out the coarsest graph from scratch, then refine every level but the finest
+        double[] cx = new double[current.n];
+        double[] cy = new double[current.n];
+        double spread = K * Math.sqrt(current.n);
+        for (int i = 0; i < current.n; i++) {
+            cx[i] = spread * (random.nextDouble() - 0.5);
+            cy[i] = spread * (random.nextDouble() - 0.5);
+        }
+        settle(current, cx, cy, spread / 2, COARSEST_COOLING);
+        for (int l = levels.size() - 2; l >= 0; l--) {
+            Level fine = levels.get(l);
+            double[] fx = l == 0 ? x : new double[fine.n];
+            double[] fy = l == 0 ? y : new double[fine.n];
+            for (int i = 0; i < fine.n; i++) {
+                fx[i] = cx[fine.coarser[i]] + K * 0.1 * (random.nextDouble() - 0.5);
+                fy[i] = cy[fine.coarser[i]] + K * 0.1 * (random.nextDouble() - 0.5);
+            }
+            if (l > 0) {
+                // Vertices of a coarser level stand for more vertices, so sit further apart
+                settle(fine, fx, fy, K * Math.sqrt((double) level.n / fine.n), REFINE_COOLING);
+            }
+            cx = fx;
+            cy = fy;
+        }
+        if (levels.size() == 1) {
+            System.arraycopy(cx, 0, x, 0, level.n);
+            System.arraycopy(cy, 0, y, 0, level.n);
+        }
+        for (int i = 0; i < level.n; i++) {
+            placed[i] = true;
+            moved[i] = true;
+            heat[i] = EDIT_HEAT;
+        }
+        framePending = true;
+    }
+
+    /**
+     * Helper method that iterates one level of a multilevel layout until it cools.
+     */
+    private void settle(Level g, double[] gx, double[] gy, double initialHeat,
+                        double cooling) {
+        double[] h = new double[g.n];
+        Arrays.fill(h, initialHeat);
+        int[] all = new int[g.n];
+        for (int i = 0; i < g.n; i++) {
+            all[i] = i;
+        }
+        double[] dx = new double[g.n];
+        double[] dy = new double[g.n];
+        for (double t = initialHeat; t > MIN_HEAT; t *= cooling) {
+            tree.build(gx, gy, g.mass, g.n);
+            step(g, gx, gy, h, all, g.n, tree, dx, dy, cooling);
+        }
+    }
+
+    /**
+     * Helper method that runs one iteration on the hot vertices of the live graph.
+     */
+    private void iterate() {
+        int n = level.n;
+        int[] hot = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (heat[i] > MIN_HEAT) {
+                hot[count++] = i;
+            } else {
+                heat[i] = 0;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        // Vertices that are not hot do not move, so a tree built a few iterations ago is still
+        // close when only a few vertices are hot
+        if (treeStale || count > n / 8 || ++sinceRebuild >= REBUILD_EVERY) {
+            tree.build(x, y, level.mass, n);
+            treeStale = false;
+            sinceRebuild = 0;
+        }
+        step(level, x, y, heat, hot, count, tree, new double[n], new double[n], COOLING);
+        for (int k = 0; k < count; k++) {
+            moved[hot[k]] = true;
+        }
+        framePending = true;
+    }
+
+    private boolean isHot() {
+        if (level == null) {
+            return false;
+        }
+        for (int i = 0; i < level.n; i++) {
+            if (heat[i] > MIN_HEAT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method that moves every listed vertex along the sum of the forces on it, by at
+     * most its heat, and cools it.
+     */
+    private static void step(Level g, double[] gx, double[] gy, double[] h, int[] nodes,
+                             int count, QuadTree tree, double[] dx, double[] dy,
+                             double cooling) {
+        double[] force = new double[2];
+        for (int k = 0; k < count; k++) {
+            int i = nodes[k];
+            tree.repulsion(i, gx[i], gy[i], g.mass[i], force);
+            double fx = force[0] - GRAVITY * g.mass[i] * gx[i];
+            double fy = force[1] - GRAVITY * g.mass[i] * gy[i];
+            for (int e = g.start[i]; e < g.start[i + 1]; e++) {
+                int j = g.adj[e];
+                double ex = gx[j] - gx[i];
+                double ey = gy[j] - gy[i];
+                double d = Math.sqrt(ex * ex + ey * ey);
+                fx += g.weight[e] * ex * d / K;
+                fy += g.weight[e] * ey * d / K;
+            }
+            double length = Math.sqrt(fx * fx + fy * fy);
+            double scale = length > h[i] ? h[i] / length : 1;
+            dx[i] = fx * scale;
+            dy[i] = fy * scale;
+        }
+        for (int k = 0; k < count; k++) {
+            int i = nodes[k];
+            gx[i] += dx[i];
+            gy[i] += dy[i];
+            h[i] *= cooling;
+        }
+    }
+
+    /**
+     * Helper method that sends the positions of every vertex that moved since the last frame,
+     * unless the last frame is still being delivered.
+     */
+    private void sendFrame() {
+        if (outstanding.get() > 0) {
+            return;
+        }
+        framePending = false;
+        lastFrame = System.nanoTime();
+        int n = labels.size();
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (moved[i]) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        outstanding.set((count + BATCH - 1) / BATCH);
+        String[] batchLabels = new String[Math.min(BATCH, count)];
+        double[] batchXY = new double[2 * batchLabels.length];
+        int filled = 0;
+        for (int i = 0; i < n; i++) {
+            if (!moved[i]) {
+                continue;
+            }
+            moved[i] = false;
+            batchLabels[filled] = labels.get(i);
+            batchXY[2 * filled] = x[i];
+            batchXY[2 * filled + 1] = y[i];
+            count--;
+            if (++filled == batchLabels.length) {
+                String[] l = batchLabels;
+                double[] xy = batchXY;
+                int size = filled;
+                delivery.execute(() -> {
+                    try {
+                        sink.accept(l, xy, size);
+                    } finally {
+                        outstanding.decrementAndGet();
+                    }
+                });
+                batchLabels = new String[Math.min(BATCH, count)];
+                batchXY = new double[2 * batchLabels.length];
+                filled = 0;
+            }
+        }
+    }
+
+    /**
+     * Helper method that merges vertices along heavy edges into a graph with about half as
+     * many vertices, and records which coarse vertex each vertex went to.
+     */
+    private Level coarsen(Level g) {
+        int[] order = new int[g.n];
+        for (int i = 0; i < g.n; i++) {
+            order[i] = i;
+        }
+        for (int i = g.n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        int[] map = new int[g.n];
+        Arrays.fill(map, -1);
+        int coarseCount = 0;
+        for (int k = 0; k < g.n; k++) {
+            int u = order[k];
+            if (map[u] >= 0) {
+                continue;
+            }
+            int best = -1;
+            int bestWeight = 0;
+            for (int e = g.start[u]; e < g.start[u + 1]; e++) {
+                int v = g.adj[e];
+                if (map[v] < 0 && g.weight[e] > bestWeight) {
+                    best = v;
+                    bestWeight = g.weight[e];
+                }
+            }
+            map[u] = coarseCount;
+            if (best >= 0) {
+                map[best] = coarseCount;
+            }
+            coarseCount++;
+        }
+        g.coarser = map;
+
+        // Members of every coarse vertex, grouped by counting sort
+        int[] memberStart = new int[coarseCount + 1];
+        for (int i = 0; i < g.n; i++) {
+            memberStart[map[i] + 1]++;
+        }
+        for (int c = 0; c < coarseCount; c++) {
+            memberStart[c + 1] += memberStart[c];
+        }
+        int[] members = new int[g.n];
+        int[] next = Arrays.copyOf(memberStart, coarseCount);
+        for (int i = 0; i < g.n; i++) {
+            members[next[map[i]]++] = i;
+        }
+
+        // Sum the edges between coarse vertices, dropping the ones inside a coarse vertex
+        double[] mass = new double[coarseCount];
+        int[] start = new int[coarseCount + 1];
+        int[] adj = new int[g.start[g.n]];
+        int[] weight = new int[g.start[g.n]];
+        int[] slot = new int[coarseCount];
+        Arrays.fill(slot, -1);
+        int edgeCount = 0;
+        for (int c = 0; c < coarseCount; c++) {
+            start[c] = edgeCount;
+            for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                int u = members[m];
+                mass[c] += g.mass[u];
+                for (int e = g.start[u]; e < g.start[u + 1]; e++) {
+                    int d = map[g.adj[e]];
+                    if (d == c) {
+                        continue;
+                    }
+                    if (slot[d] < start[c]) {
+                        slot[d] = edgeCount;
+                        adj[edgeCount] = d;
+                        weight[edgeCount++] = g.weight[e];
+                    } else {
+                        weight[slot[d]] += g.weight[e];
+                    }
+                }
+            }
+        }
+        start[coarseCount] = edgeCount;
+        return new Level(coarseCount, start, adj, weight, mass);
+    }
+
+    /**
+     * A graph being laid out: the live graph, or one of its coarsenings.
+     */
+    private static class Level {
+        final int n;
+        // Undirected neighbors of vertex i are adj[start[i]] to adj[start[i + 1] - 1]
+        final int[] start;
+        final int[] adj;
+        final int[] weight;
+        // Number of live vertices merged into each vertex
+        final double[] mass;
+        // Vertex of the next coarser level each vertex was merged into
+        int[] coarser;
+
+        Level(int n, int[] start, int[] adj, int[] weight, double[] mass) {
+            this.n = n;
+            this.start = start;
+            this.adj = adj;
+            this.weight = weight;
+            this.mass = mass;
+        }
+    }
+
+    /**
+     * A Barnes-Hut quadtree stored in flat arrays. Cell 0 is the root; a leaf holds a chain of
+     * bodies, which is longer than one only at the depth limit.
+     */
+    private static class QuadTree {
+        private static final int MAX_DEPTH = 40;
+        private static final int EMPTY = -1;
+        private static final int INTERNAL = -2;
+
+        private double[] centerX = new double[64];
+        private double[] centerY = new double[64];
+        private double[] half = new double[64];
+        private double[] mass = new double[64];
+        private double[] massX = new double[64];
+        private double[] massY = new double[64];
+        private int[] child = new int[4 * 64];
+        private int[] body = new int[64];
+        private int[] depth = new int[64];
+        private int cells;
+        private int[] next = new int[0];
+        private double[] bx;
+        private double[] by;
+        private double[] bm;
+        private final int[] stack = new int[4 * MAX_DEPTH + 8];
+
+        void build(double[] x, double[] y, double[] m, int n) {
+            bx = x;
+            by = y;
+            bm = m;
+            if (next.length < n) {
+                next = new int[Math.max(n, 2 * next.length)];
+            }
+            double minX = Double.MAX_VALUE;
+            double minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE;
+            double maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            cells = 0;
+            newCell((minX + maxX) / 2, (minY + maxY) / 2,
+                    Math.max(maxX - minX, maxY - minY) / 2 + 1e-9, 0);
+            for (int b = 0; b < n; b++) {
+                insert(b);
+            }
+            // Children are created after their parents, so a reverse sweep is bottom-up
+            for (int c = cells - 1; c >= 0; c--) {
+                double m0 = 0;
+                double sx = 0;
+                double sy = 0;
+                if (body[c] == INTERNAL) {
+                    for (int q = 0; q < 4; q++) {
+                        int k = child[4 * c + q];
+                        if (k >= 0) {
+                            m0 += mass[k];
+                            sx += massX[k] * mass[k];
+                            sy += massY[k] * mass[k];
+                        }
+                    }
+                } else {
+                    for (int b = body[c]; b >= 0; b = next[b]) {
+                        m0 += m[b];
+                        sx += x[b] * m[b];
+                        sy += y[b] * m[b];
+                    }
+                }
+                mass[c] = m0;
+                massX[c] = m0 > 0 ? sx / m0 : centerX[c];
+                massY[c] = m0 > 0 ? sy / m0 : centerY[c];
+            }
+        }
+
+        private void insert(int b) {
+            next[b] = -1;
+            int c = 0;
+            while (true) {
+                if (body[c] == EMPTY) {
+                    body[c] = b;
+                    return;
+                }
+                if (body[c] >= 0) {
+                    if (depth[c] >= MAX_DEPTH) {
+                        next[b] = body[c];
+                        body[c] = b;
+                        return;
+                    }
+                    int resident = body[c];
+                    body[c] = INTERNAL;
+                    int q = quadrant(c, bx[resident], by[resident]);
+                    // childCell may grow the arrays, so call it before indexing them
+                    int k = childCell(c, q);
+                    child[4 * c + q] = k;
+                    body[k] = resident;
+                }
+                int q = quadrant(c, bx[b], by[b]);
+                if (child[4 * c + q] < 0) {
+                    int k = childCell(c, q);
+                    child[4 * c + q] = k;
+                    body[k] = b;
+                    return;
+                }
+                c = child[4 * c + q];
+            }
+        }
+
+        private int quadrant(int c, double px, double py) {
+            return (px >= centerX[c] ? 1 : 0) + (py >= centerY[c] ? 2 : 0);
+        }
+
+        private int childCell(int c, int q) {
+            double h = half[c] / 2;
+            return newCell(centerX[c] + ((q & 1) == 0 ? -h : h),
+                    centerY[c] + ((q & 2) == 0 ? -h : h), h, depth[c] + 1);
+        }
+
+        private int newCell(double cx, double cy, double h, int d) {
+            if (cells == body.length) {
+                int capacity = 2 * cells;
+                centerX = Arrays.copyOf(centerX, capacity);
+                centerY = Arrays.copyOf(centerY, capacity);
+                half = Arrays.copyOf(half, capacity);
+                mass = Arrays.copyOf(mass, capacity);
+                massX = Arrays.copyOf(massX, capacity);
+                massY = Arrays.copyOf(massY, capacity);
+                child = Arrays.copyOf(child, 4 * capacity);
+                body = Arrays.copyOf(body, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+            }
+            int c = cells++;
+            centerX[c] = cx;
+            centerY[c] = cy;
+            half[c] = h;
+            depth[c] = d;
+            body[c] = EMPTY;
+            Arrays.fill(child, 4 * c, 4 * c + 4, -1);
+            return c;
+        }
+
+        /**
+         * Computes the repulsion on body {@code i} at ({@code px}, {@code py}) from every other
+         * body, storing it in {@code out}.
+         */
+        void repulsion(int i, double px, double py, double pm, double[] out) {
+            double fx = 0;
+            double fy = 0;
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int c = stack[--top];
+                if (body[c] >= 0) {
+                    for (int b = body[c]; b >= 0; b = next[b]) {
+                        if (b != i) {
+                            double dx = px - bx[b];
+                            double dy = py - by[b];
+                            double d2 = dx * dx + dy * dy;
+                            if (d2 < 1e-12) {
+                                // Coincident bodies are pushed apart along a fixed direction
+                                dx = b < i ? 1e-3 : -1e-3;
+                                d2 = 1e-6;
+                            }
+                            double f = K * K * pm * bm[b] / d2;
+                            fx += dx * f;
+                            fy += dy * f;
+                        }
+                    }
+                } else if (body[c] == INTERNAL) {
+                    double dx = px - massX[c];
+                    double dy = py - massY[c];
+                    double d2 = dx * dx + dy * dy;
+                    double size = 2 * half[c];
+                    if (size * size < THETA * THETA * d2) {
+                        double f = K * K * pm * mass[c] / d2;
+                        fx += dx * f;
+                        fy += dy * f;
+                    } else {
+                        for (int q = 0; q < 4; q++) {
+                            if (child[4 * c + q] >= 0) {
+                                stack[top++] = child[4 * c + q];
+                            }
+                        }
+                    }
+                }
+            }
+            out[0] = fx;
+            out[1] = fy;
+        }
+    }
+
+    private enum Op {
+        ADD_VERTEX,
+        ADD_EDGE,
+        REMOVE_EDGE,
+        REMOVE_VERTEX,
+        CLEAR,
+        STOP
+    }
+
+    private static class Command {
+        final Op op;
+        final String u;
+        final String v;
+
+        Command(Op op, String u, String v) {
+            this.op = op;
+            this.u = u;
+            this.v = v;
+        }
+    }
+}
@@ -0,0 +1,665 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A durable {@link Graph}. Every mutation made through this class is applied to the graph and
+ * appended to a write-ahead log in a directory. A writer thread group-commits the log: whatever
+ * was appended while the previous batch was being written goes out in one write and one fsync,
+ * so mutations never wait on the disk unless they ask to with {@link #sync}.
+ *
+ * The directory holds checkpoints and logs numbered by generation. {@code checkpoint-G} is the
+ * graph after every mutation in the logs before {@code G}, and {@code log-G} holds the mutations
+ * made after it. Once the active log grows past a threshold the writer starts a new generation
+ * and a background thread folds the old log into a new checkpoint, so recovery never replays
+ * more than about one log.
+ */
+public class MutationLog implements AutoCloseable {
+
+    // Log record types, one for each mutation of Graph
+    private static final byte ADD_VERTEX = 1;
+    private static final byte ADD_DIRECTED_EDGE = 2;
+    private static final byte REMOVE_DIRECTED_EDGE = 3;
+    private static final byte REMOVE_VERTEX = 4;
+    // Identifies a checkpoint file ("GGCP") and the version of its layout
+    private static final int CHECKPOINT_MAGIC = 0x47474350;
+    private static final int CHECKPOINT_VERSION = 1;
+    // Size of the active log that starts a new generation
+    private static final long DEFAULT_COMPACTION_BYTES = 64L << 20;
+    private static final Pattern FILE_NAME = Pattern.compile("(checkpoint|log)-(\\d+)\\.bin");
+
+    private final Path directory;
+    private final Graph graph;
+    private final long compactionBytes;
+    // Guards the graph, the pending records, and the fields below it
+    private final Object lock = new Object();
+    // Records appended since the writer last took a batch
+    private final ByteArrayOutputStream pending;
+    private final DataOutputStream pendingData;
+    // Number of records appended, and number known to be on disk
+    private long appended;
+    private long durable;
+    private FileChannel log;
+    private int generation;
+    private Thread compactor;
+    private IOException failure;
+    private boolean closed;
+    private final Thread writer;
+
+    private MutationLog(Path directory, Graph graph, int generation, FileChannel log,
+                        long compactionBytes) {
+        this.directory = directory;
+        this.graph = graph;
+        this.generation = generation;
+        this.log = log;
+        this.compactionBytes = compactionBytes;
+        this.pending = new ByteArrayOutputStream();
+        this.pendingData = new DataOutputStream(pending);
+        this.appended = 0;
+        this.durable = 0;
+        this.closed = false;
+        this.writer = new Thread(this::writeLoop, "mutation-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens the log in {@code directory}, creating the directory if needed, and recovers the
+     * graph from the latest checkpoint and the logs written after it.
+     *
+     * @param directory the directory holding the checkpoints and logs
+     * @return the opened log
+     * @throws IOException if a file cannot be read or written, or a log is corrupt
+     */
+    public static MutationLog open(Path directory) throws IOException {
+        return open(directory, DEFAULT_COMPACTION_BYTES);
+    }
+
+    /**
+     * Opens the log in {@code directory}, starting a new generation whenever the active log
+     * grows past {@code compactionBytes}.
+     *
+     * @param directory the directory holding the checkpoints and logs
+     * @param compactionBytes the size of the active log that triggers compaction
+     * @return the opened log
+     * @throws IOException if a file cannot be read or written, or a log is corrupt
+     * @see #open(Path)
+     */
+    public static MutationLog open(Path directory, long compactionBytes) throws IOException {
+        Files.createDirectories(directory);
+        TreeSet<Integer> checkpoints = new TreeSet<>();
+        TreeSet<Integer> logs = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher m = FILE_NAME.matcher(name);
+                if (m.matches()) {
+                    int gen = Integer.parseInt(m.group(2));
+                    (m.group(1).equals("log") ? logs : checkpoints).add(gen);
+                } else if (name.endsWith(".tmp")) {
+                    // A checkpoint that was still being written when the process stopped
+                    Files.delete(file);
+                }
+            }
+        }
+
+        int base = checkpoints.isEmpty() ? 0 : checkpoints.last();
+        Graph graph = checkpoints.isEmpty() ? new Graph() : readCheckpoint(checkpoint(directory,
+                base));
+        deleteBefore(directory, base);
+        int active = logs.isEmpty() ? base : Math.max(base, logs.last());
+        for (int gen : logs.tailSet(base)) {
+            long valid = replay(log(directory, gen), graph);
+            if (valid >= 0) {
+                if (gen != active) {
+                    throw new IOException("Corrupt mutation log " + log(directory, gen));
+                }
+                // Drop the torn tail of a batch that was being written when the process stopped
+                try (FileChannel torn = FileChannel.open(log(directory, gen),
+                        StandardOpenOption.WRITE)) {
+                    torn.truncate(valid);
+                    torn.force(true);
+                }
+            }
+        }
+
+        FileChannel channel = FileChannel.open(log(directory, active), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        forceDirectory(directory);
+        MutationLog mutationLog = new MutationLog(directory, graph, active, channel,
+                compactionBytes);
+        if (active > base) {
+            // Logs from before the active one are left over from an unfinished compaction
+            synchronized (mutationLog.lock) {
+                mutationLog.startCompaction(active);
+            }
+        }
+        return mutationLog;
+    }
+
+    /** GRAPH ADDITION/REMOVAL */
+
+    /**
+     * Adds a vertex {@code u} to the graph if it is not in the graph and logs the change.
+     *
+     * @param u a vertex
+     * @param rootInTree whether this vertex is the root of a BFS, DFS, or shortest path tree
+     * @return {@code true} if the graph changed as a result of this call, false otherwise
+     * @throws IllegalArgumentException if the label is too long to log
+     * @see Graph#addVertex
+     */
+    public boolean addVertex(String u, boolean rootInTree) {
+        synchronized (lock) {
+            checkOpen();
+            byte[] record = record(ADD_VERTEX, u, null, rootInTree ? 1 : 0);
+            boolean changed = graph.addVertex(u, rootInTree);
+            if (changed) {
+                append(record);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Adds a directed edge from {@code u} to {@code v} and logs the change.
+     *
+     * @param u      a vertex
+     * @param v      a vertex
+     * @param weight the edge weight
+     * @return {@code true} if the graph changed as a result of this call, false otherwise
+     * @throws IllegalArgumentException if u == v or a label is too long to log
+     * @see Graph#addDirectedEdge
+     */
+    public boolean addDirectedEdge(String u, String v, int weight) {
+        synchronized (lock) {
+            checkOpen();
+            byte[] record = record(ADD_DIRECTED_EDGE, u, v, weight);
+            boolean changed = graph.addDirectedEdge(u, v, weight);
+            if (changed) {
+                append(record);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Removes a directed edge from {@code u} to {@code v} and logs the change.
+     *
+     * @param u a vertex
+     * @param v a vertex
+     * @return {@code true} if the graph changed as a result of this call, false otherwise
+     * @throws IllegalArgumentException if u == v, a vertex is not in the graph, or a label is
+     *                                  too long to log
+     * @see Graph#removeDirectedEdge
+     */
+    public boolean removeDirectedEdge(String u, String v) {
+        synchronized (lock) {
+            checkOpen();
+            byte[] record = record(REMOVE_DIRECTED_EDGE, u, v, 0);
+            boolean changed = graph.removeDirectedEdge(u, v);
+            if (changed) {
+                append(record);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Removes a vertex {@code u} and all its edges and logs the change.
+     *
+     * @param u a vertex
+     * @return {@code true} if the graph changed as a result of this call, false otherwise
+     * @throws IllegalArgumentException if the label is too long to log
+     * @see Graph#removeVertex
+     */
+    public boolean removeVertex(String u) {
+        synchronized (lock) {
+            checkOpen();
+            byte[] record = record(REMOVE_VERTEX, u, null, 0);
+            boolean changed = graph.removeVertex(u);
+            if (changed) {
+                append(record);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Blocks until every mutation made before this call is on disk.
+     *
+     * @throws IOException if the log could not be written
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void sync() throws IOException, InterruptedException {
+        synchronized (lock) {
+            long target = appended;
+            while (durable < target && failure == null) {
+                lock.wait();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Writes out every pending mutation, waits for a running compaction, and closes the log.
+     *
+     * @throws IOException if the log could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                writer.join();
+                synchronized (lock) {
+                    running = compactor;
+                }
+                if (running == null) {
+                    break;
+                }
+                running.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            log.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Returns the graph kept by this log. It must only be changed through this log, and it is
+     * not safe to read while another thread is making mutations.
+     *
+     * @return the graph
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Mutation log is closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Mutation log failed", failure);
+        }
+    }
+
+    /**
+     * Helper method that encodes the payload of a record. Mutations encode their record before
+     * changing the graph, so a label that cannot be logged leaves the graph as it was.
+     *
+     * @throws IllegalArgumentException if a label is longer than 65535 bytes in modified UTF-8
+     */
+    private static byte[] record(byte type, String u, String v, int value) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(16 + u.length());
+        DataOutputStream data = new DataOutputStream(payload);
+        try {
+            data.writeByte(type);
+            data.writeUTF(u);
+            if (v != null) {
+                data.writeUTF(v);
+            }
+            if (type == ADD_VERTEX) {
+                data.writeBoolean(value != 0);
+            } else if (type == ADD_DIRECTED_EDGE) {
+                data.writeInt(value);
+            }
+        } catch (UTFDataFormatException e) {
+            throw new IllegalArgumentException("Label is too long to log", e);
+        } catch (IOException e) {
+            // Writing to a byte array fails only on an unencodable label, caught above
+            throw new IllegalStateException(e);
+        }
+        return payload.toByteArray();
+    }
+
+    /**
+     * Helper method that adds an encoded record to the pending batch and wakes the writer. A
+     * record is its payload length, the CRC-32 of its payload, and the payload.
+     */
+    private void append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        try {
+            pendingData.writeInt(payload.length);
+            pendingData.writeInt((int) crc.getValue());
+            pendingData.write(payload);
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail
+            throw new IllegalStateException(e);
+        }
+        appended++;
+        lock.notifyAll();
+    }
+
+    /**
+     * The writer thread: takes everything appended so far as one batch, writes it, fsyncs once,
+     * and starts a new generation when the active log is too large.
+     */
+    private void writeLoop() {
+        while (true) {
+            byte[] batch;
+            long batchEnd;
+            FileChannel channel;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Fail the log rather than leave sync and close waiting forever
+                        failure = new InterruptedIOException("Mutation log writer interrupted");
+                        lock.notifyAll();
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                batchEnd = appended;
+                channel = log;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                synchronized (lock) {
+                    durable = batchEnd;
+                    if (channel.size() >= compactionBytes && compactor == null) {
+                        startGeneration();
+                    }
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper method that switches appends to a new log and compacts the previous one in the
+     * background. Called with the lock held.
+     */
+    private void startGeneration() throws IOException {
+        FileChannel next = FileChannel.open(log(directory, generation + 1),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        forceDirectory(directory);
+        log.close();
+        log = next;
+        generation++;
+        startCompaction(generation);
+    }
+
+    /**
+     * Helper method that starts a thread writing {@code checkpoint-upTo} from the latest
+     * checkpoint and the logs before {@code upTo}, then deleting the files it replaces. Called
+     * with the lock held.
+     */
+    private void startCompaction(int upTo) {
+        compactor = new Thread(() -> {
+            try {
+                compact(directory, upTo);
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+            } finally {
+                synchronized (lock) {
+                    compactor = null;
+                }
+            }
+        }, "mutation-log-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    /**
+     * Helper method that writes {@code checkpoint-upTo} without touching the live graph, by
+     * replaying the older logs on top of the latest older checkpoint.
+     */
+    private static void compact(Path directory, int upTo) throws IOException {
+        int base = -1;
+        TreeSet<Integer> logs = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    int gen = Integer.parseInt(m.group(2));
+                    if (m.group(1).equals("log")) {
+                        logs.add(gen);
+                    } else if (gen < upTo) {
+                        base = Math.max(base, gen);
+                    }
+                }
+            }
+        }
+        Graph graph = base < 0 ? new Graph() : readCheckpoint(checkpoint(directory, base));
+        for (int gen : logs.subSet(Math.max(base, 0), upTo)) {
+            if (replay(log(directory, gen), graph) >= 0) {
+                throw new IOException("Corrupt mutation log " + log(directory, gen));
+            }
+        }
+        Path tmp = directory.resolve("checkpoint-" + upTo + ".bin.tmp");
+        writeCheckpoint(graph, tmp);
+        Files.move(tmp, checkpoint(directory, upTo), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory);
+        deleteBefore(directory, upTo);
+    }
+
+    /**
+     * Helper method that applies every record of a log to {@code graph}.
+     *
+     * @return -1 if the whole log was valid, otherwise the length of its valid prefix
+     */
+    private static long replay(Path file, Graph graph) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return -1;
+                }
+                byte[] payload;
+                int checksum;
+                try {
+                    checksum = in.readInt();
+                    if (length < 0 || length > (1 << 20)) {
+                        return valid;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    return valid;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    return valid;
+                }
+                apply(payload, graph);
+                valid += 8 + length;
+            }
+        }
+    }
+
+    private static void apply(byte[] payload, Graph graph) throws IOException {
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = record.readByte();
+        String u = record.readUTF();
+        switch (type) {
+            case ADD_VERTEX:
+                graph.addVertex(u, record.readBoolean());
+                break;
+            case ADD_DIRECTED_EDGE:
+                String v = record.readUTF();
+                graph.addDirectedEdge(u, v, record.readInt());
+                break;
+            case REMOVE_DIRECTED_EDGE:
+                graph.removeDirectedEdge(u, record.readUTF());
+                break;
+            case REMOVE_VERTEX:
+                graph.removeVertex(u);
+                break;
+            default:
+                throw new IOException("Unknown log record type " + type);
+        }
+    }
+
+    /**
+     * Helper method that writes every vertex and then every edge of {@code graph}, followed by
+     * the CRC-32 of everything before it, and fsyncs the file.
+     */
+    private static void writeCheckpoint(Graph graph, Path file) throws IOException {
+        HashSet<String> roots = new HashSet<>();
+        for (Map.Entry<String, Vertex> e : graph.getRoots()) {
+            // Graph keeps the root entry of a removed vertex, so only count live ones
+            if (graph.getVertex(e.getKey()) == e.getValue()) {
+                roots.add(e.getKey());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(out, 1 << 16), new CRC32());
+            DataOutputStream data = new DataOutputStream(checked);
+            data.writeInt(CHECKPOINT_MAGIC);
+            data.writeInt(CHECKPOINT_VERSION);
+            data.writeInt(graph.getAdjacencyList().size());
+            // Every label here came through a logged record, so it fits writeUTF
+            for (Map.Entry<String, Vertex> e : graph.getAdjacencyList()) {
+                data.writeUTF(e.getKey());
+                data.writeBoolean(roots.contains(e.getKey()));
+            }
+            for (Map.Entry<String, Vertex> e : graph.getAdjacencyList()) {
+                Vertex vertex = e.getValue();
+                data.writeInt(vertex.getNeighbors().size());
+                for (String s : vertex.getNeighbors()) {
+                    data.writeUTF(s);
+                    data.writeInt(vertex.getWeight(s));
+                }
+            }
+            data.writeInt((int) checked.getChecksum().getValue());
+            data.flush();
+            channel.force(true);
+        }
+    }
+
+    private static Graph readCheckpoint(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(in, 1 << 16),
+                new CRC32());
+        try (DataInputStream data = new DataInputStream(checked)) {
+            if (data.readInt() != CHECKPOINT_MAGIC || data.readInt() != CHECKPOINT_VERSION) {
+                throw new IOException("Not a checkpoint file " + file);
+            }
+            Graph graph = new Graph();
+            int vertexCount = data.readInt();
+            String[] labels = new String[vertexCount];
+            for (int i = 0; i < vertexCount; i++) {
+                labels[i] = data.readUTF();
+                graph.addVertex(labels[i], data.readBoolean());
+            }
+            for (int i = 0; i < vertexCount; i++) {
+                int degree = data.readInt();
+                for (int j = 0; j < degree; j++) {
+                    graph.addDirectedEdge(labels[i], data.readUTF(), data.readInt());
+                }
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (data.readInt() != expected) {
+                throw new IOException("Corrupt checkpoint " + file);
+            }
+            return graph;
+        } catch (EOFException e) {
+            throw new IOException("Corrupt checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Helper method that deletes every checkpoint and log of a generation before {@code gen}.
+     */
+    private static void deleteBefore(Path directory, int gen) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches() && Integer.parseInt(m.group(2)) < gen) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that makes file creations, renames, and deletions in {@code directory}
+     * durable. Not every platform can open a directory, in which case this does nothing.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) { }
+    }
+
+    private static Path checkpoint(Path directory, int gen) {
+        return directory.resolve("checkpoint-" + gen + ".bin");
+    }
+
+    private static Path log(Path directory, int gen) {
+        return directory.resolve("log-" + gen + ".bin");
+    }
+}
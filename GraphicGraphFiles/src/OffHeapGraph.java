@@ -0,0 +1,622 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only graph whose adjacency, edge weights, and per-vertex algorithm state live outside
+ * the Java heap, either in direct buffers or in a memory-mapped file. Vertices are numbered in
+ * the iteration order of the {@link Graph} they were copied from and every adjacency list keeps
+ * its original neighbor order, so {@link #bfs} and {@link #dfs} return the same forests as the
+ * corresponding {@link Graph} methods. {@link #dijkstra} always runs Dijkstra's algorithm: it
+ * finds the same distances as {@link Graph#dijkstra} when no edge weight is negative, but unlike
+ * it rejects negative weights on acyclic graphs too.
+ *
+ * Only the vertex labels stay on the heap, since every query is made with a label.
+ */
+public class OffHeapGraph {
+
+    // Identifies an off-heap graph file ("GGOH") and the version of its layout
+    static final int MAGIC = 0x47474F48;
+    static final int VERSION = 1;
+    // File header: magic, version, vertex count, padding, edge count, position of the labels
+    static final int HEADER_BYTES = 32;
+    // Every edge is stored as an int target id followed by an int weight
+    static final int EDGE_BYTES = 8;
+    // Per-vertex state: discovered, start, finish, distance, parent, heap index, edge cursor,
+    // and the weight of the edge from the parent
+    private static final int STATE_BYTES = 40;
+    private static final int DISCOVERED = 0;
+    private static final int START = 4;
+    private static final int FINISH = 8;
+    private static final int DISTANCE = 12;
+    private static final int PARENT = 16;
+    private static final int HEAP_INDEX = 20;
+    private static final int CURSOR = 24;
+    private static final int PARENT_WEIGHT = 32;
+
+    // Labels of the vertices, indexed by vertex id
+    private final String[] labels;
+    // Maps a label back to its vertex id
+    private final HashMap<String, Integer> ids;
+    // (size + 1) longs: the index of the first edge of every vertex, plus the total edge count
+    private final Segments offsets;
+    // The edges of every vertex, stored contiguously in vertex order
+    private final Segments edges;
+    // Per-vertex algorithm state
+    private final Segments state;
+    // One int per vertex, used as the BFS queue, the DFS stack, or Dijkstra's heap
+    private final Segments work;
+    private final int size;
+    private final long edgeCount;
+    private int time;
+
+    private OffHeapGraph(String[] labels, Segments offsets, Segments edges, long edgeCount) {
+        this.labels = labels;
+        this.size = labels.length;
+        this.ids = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ids.put(labels[i], i);
+        }
+        this.offsets = offsets;
+        this.edges = edges;
+        this.edgeCount = edgeCount;
+        this.state = Segments.allocate((long) size * STATE_BYTES);
+        this.work = Segments.allocate((long) size * 4);
+        this.time = 0;
+    }
+
+    /**
+     * Copies a graph into direct buffers.
+     *
+     * @param g a graph
+     * @return an off-heap copy of {@code g}
+     */
+    public static OffHeapGraph of(Graph g) {
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<String> order = new ArrayList<>();
+        long edgeCount = 0;
+        for (Map.Entry<String, Vertex> e : g.getAdjacencyList()) {
+            ids.put(e.getKey(), order.size());
+            order.add(e.getKey());
+            edgeCount += e.getValue().getNeighbors().size();
+        }
+        String[] labels = order.toArray(new String[0]);
+
+        Segments offsets = Segments.allocate((labels.length + 1L) * 8);
+        Segments edges = Segments.allocate(edgeCount * EDGE_BYTES);
+        long edge = 0;
+        for (int i = 0; i < labels.length; i++) {
+            offsets.putLong(i * 8L, edge);
+            Vertex vertex = g.getVertex(labels[i]);
+            for (String s : vertex.getNeighbors()) {
+                edges.putInt(edge * EDGE_BYTES, ids.get(s));
+                edges.putInt(edge * EDGE_BYTES + 4, vertex.getWeight(s));
+                edge++;
+            }
+        }
+        offsets.putLong(labels.length * 8L, edge);
+        return new OffHeapGraph(labels, offsets, edges, edgeCount);
+    }
+
+    /**
+     * Memory-maps a graph file written by {@link #save}. Adjacency and weights are paged in by
+     * the operating system on demand; only the labels are read onto the heap.
+     *
+     * @param file an off-heap graph file
+     * @return the mapped graph
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not an off-heap graph file
+     */
+    public static OffHeapGraph map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IllegalArgumentException("Not an off-heap graph file");
+                }
+            }
+            header.flip();
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Not an off-heap graph file");
+            }
+            int vertexCount = header.getInt(8);
+            long edgeCount = header.getLong(16);
+            long labelsPosition = header.getLong(24);
+
+            long offsetsBytes = (vertexCount + 1L) * 8;
+            Segments offsets = Segments.map(channel, HEADER_BYTES, offsetsBytes);
+            Segments edges = Segments.map(channel, HEADER_BYTES + offsetsBytes,
+                    edgeCount * EDGE_BYTES);
+
+            String[] labels = new String[vertexCount];
+            InputStream in = Channels.newInputStream(channel.position(labelsPosition));
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            for (int i = 0; i < vertexCount; i++) {
+                byte[] bytes = new byte[Integer.reverseBytes(data.readInt())];
+                data.readFully(bytes);
+                labels[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new OffHeapGraph(labels, offsets, edges, edgeCount);
+        }
+    }
+
+    /**
+     * Writes this graph to {@code file} in the layout read by {@link #map}.
+     *
+     * @param file the destination file, which is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offsetsBytes = (size + 1L) * 8;
+            long labelsPosition = HEADER_BYTES + offsetsBytes + edgeCount * EDGE_BYTES;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0);
+            header.putLong(edgeCount).putLong(labelsPosition);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            offsets.writeTo(channel, offsetsBytes);
+            edges.writeTo(channel, edgeCount * EDGE_BYTES);
+
+            OutputStream out = Channels.newOutputStream(channel);
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            for (String label : labels) {
+                byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(Integer.reverseBytes(bytes.length));
+                data.write(bytes);
+            }
+            data.flush();
+        }
+    }
+
+    /** GRAPH ALGORITHMS */
+
+    /**
+     * Helper method that resets every vertex's discovered, times, and distances
+     */
+    private void resetState() {
+        for (long i = 0; i < size; i++) {
+            long base = i * STATE_BYTES;
+            state.putInt(base + DISCOVERED, 0);
+            state.putInt(base + START, 0);
+            state.putInt(base + FINISH, 0);
+            state.putInt(base + DISTANCE, Integer.MAX_VALUE);
+            state.putInt(base + PARENT, -1);
+            state.putInt(base + HEAP_INDEX, -1);
+            state.putLong(base + CURSOR, 0);
+            state.putInt(base + PARENT_WEIGHT, 0);
+        }
+    }
+
+    /**
+     * The Breadth-First Search algorithm.
+     *
+     * @param source the vertex the search will initially start at.
+     * @return a graph representation of the BFS forest
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public Graph bfs(String source) {
+        int s = indexOf(source);
+        resetState();
+        Graph bfsForest = new Graph();
+        bfsForest.addVertex(source, true);
+        int tail = bfsVisit(bfsForest, s, 0);
+        for (int v = 0; v < size; v++) {
+            if (!discovered(v)) {
+                bfsForest.addVertex(labels[v], true);
+                tail = bfsVisit(bfsForest, v, tail);
+            }
+        }
+        return bfsForest;
+    }
+
+    /**
+     * Helper method to visit all vertices reachable from {@code u} and add them according to
+     * the BFS forest. Every vertex is queued at most once per search, so the queue never wraps.
+     *
+     * @param forest the BFS forest
+     * @param u a vertex id
+     * @param head the first free slot of the queue
+     * @return the first free slot of the queue after the visit
+     */
+    private int bfsVisit(Graph forest, int u, int head) {
+        int tail = head;
+        state.putInt(u * (long) STATE_BYTES + DISCOVERED, 1);
+        work.putInt(tail++ * 4L, u);
+        while (head < tail) {
+            int visited = work.getInt(head++ * 4L);
+            long end = firstEdge(visited + 1);
+            for (long e = firstEdge(visited); e < end; e++) {
+                int t = target(e);
+                if (!discovered(t)) {
+                    state.putInt(t * (long) STATE_BYTES + DISCOVERED, 1);
+                    forest.addDirectedEdge(labels[visited], labels[t], weight(e));
+                    work.putInt(tail++ * 4L, t);
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * The Depth-First Search.
+     *
+     * @param source the vertex that DFS starts at
+     * @return the graph representation of the DFS forest
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public Graph dfs(String source) {
+        int s = indexOf(source);
+        time = 0;
+        resetState();
+        Graph dfsForest = new Graph();
+        dfsForest.addVertex(source, true);
+        dfsVisit(dfsForest, s);
+        for (int v = 0; v < size; v++) {
+            if (!discovered(v)) {
+                dfsForest.addVertex(labels[v], true);
+                dfsVisit(dfsForest, v);
+            }
+        }
+        return dfsForest;
+    }
+
+    /**
+     * Helper method to visit a vertex's descendants and update start and finish times
+     * accordingly. The recursion of {@link Graph}'s version is replaced by a stack of vertex ids
+     * whose position in their adjacency list is kept in their state.
+     *
+     * @param forest the DFS forest
+     * @param u a vertex id
+     */
+    private void dfsVisit(Graph forest, int u) {
+        int top = 0;
+        dfsDiscover(forest, u);
+        work.putInt(0, u);
+        while (top >= 0) {
+            int curr = work.getInt(top * 4L);
+            long base = curr * (long) STATE_BYTES;
+            long e = state.getLong(base + CURSOR);
+            long end = firstEdge(curr + 1);
+            while (e < end && discovered(target(e))) {
+                e++;
+            }
+            if (e < end) {
+                int next = target(e);
+                state.putLong(base + CURSOR, e + 1);
+                forest.addDirectedEdge(labels[curr], labels[next], 1);
+                dfsDiscover(forest, next);
+                work.putInt(++top * 4L, next);
+            } else {
+                state.putLong(base + CURSOR, end);
+                time++;
+                state.putInt(base + FINISH, time);
+                forest.getVertex(labels[curr]).setFinish(time);
+                top--;
+            }
+        }
+    }
+
+    /**
+     * Helper method that marks {@code u} discovered and records its start time.
+     *
+     * @param forest the DFS forest
+     * @param u a vertex id
+     */
+    private void dfsDiscover(Graph forest, int u) {
+        time++;
+        long base = u * (long) STATE_BYTES;
+        state.putInt(base + DISCOVERED, 1);
+        state.putInt(base + START, time);
+        state.putLong(base + CURSOR, firstEdge(u));
+        forest.getVertex(labels[u]).setStart(time);
+    }
+
+    /**
+     * Dijkstra's Algorithm, even on an acyclic graph.
+     *
+     * @param source the root of the shortest path tree
+     * @return the shortest path tree rooted at {@code source}
+     * @throws IllegalArgumentException if the source is not in the graph or a path starting
+     *                                  from it contains a negative edge weight
+     */
+    public Graph dijkstra(String source) {
+        int s = indexOf(source);
+        resetState();
+        state.putInt(s * (long) STATE_BYTES + DISTANCE, 0);
+        int heapSize = heapPush(0, s);
+
+        while (heapSize > 0) {
+            int curr = work.getInt(0);
+            heapSize = heapPop(heapSize);
+            long base = curr * (long) STATE_BYTES;
+            int dist = state.getInt(base + DISTANCE);
+            state.putInt(base + DISCOVERED, 1);
+            long end = firstEdge(curr + 1);
+            for (long e = firstEdge(curr); e < end; e++) {
+                int t = target(e);
+                int edgeWeight = weight(e);
+                if (edgeWeight < 0) {
+                    throw new IllegalArgumentException("A path starting from source contains " +
+                            "negative edge weight");
+                }
+                long neighbor = t * (long) STATE_BYTES;
+                if (state.getInt(neighbor + DISCOVERED) == 0) {
+                    int newDistance = dist + edgeWeight;
+                    if (newDistance < state.getInt(neighbor + DISTANCE)) {
+                        state.putInt(neighbor + DISTANCE, newDistance);
+                        state.putInt(neighbor + PARENT, curr);
+                        state.putInt(neighbor + PARENT_WEIGHT, edgeWeight);
+                        int index = state.getInt(neighbor + HEAP_INDEX);
+                        if (index < 0) {
+                            heapSize = heapPush(heapSize, t);
+                        } else {
+                            siftUp(index, t);
+                        }
+                    }
+                }
+            }
+        }
+
+        Graph shortestPathTree = new Graph();
+        shortestPathTree.addVertex(source, true);
+        for (int v = 0; v < size; v++) {
+            if (discovered(v)) {
+                shortestPathTree.addVertex(labels[v], false);
+            }
+        }
+        for (int v = 0; v < size; v++) {
+            long base = v * (long) STATE_BYTES;
+            int parent = state.getInt(base + PARENT);
+            if (discovered(v) && parent >= 0) {
+                shortestPathTree.addDirectedEdge(labels[parent], labels[v],
+                        state.getInt(base + PARENT_WEIGHT));
+            }
+        }
+        return shortestPathTree;
+    }
+
+    /**
+     * Helper method that appends {@code v} to the heap and restores the heap order.
+     *
+     * @param heapSize the number of vertices in the heap
+     * @param v a vertex id
+     * @return the new number of vertices in the heap
+     */
+    private int heapPush(int heapSize, int v) {
+        siftUp(heapSize, v);
+        return heapSize + 1;
+    }
+
+    /**
+     * Helper method that removes the vertex at the top of the heap.
+     *
+     * @param heapSize the number of vertices in the heap
+     * @return the new number of vertices in the heap
+     */
+    private int heapPop(int heapSize) {
+        state.putInt(work.getInt(0) * (long) STATE_BYTES + HEAP_INDEX, -1);
+        int last = work.getInt((heapSize - 1) * 4L);
+        heapSize--;
+        if (heapSize > 0) {
+            int index = 0;
+            int dist = distance(last);
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                int right = child + 1;
+                if (right < heapSize && distance(work.getInt(right * 4L))
+                        < distance(work.getInt(child * 4L))) {
+                    child = right;
+                }
+                int c = work.getInt(child * 4L);
+                if (distance(c) >= dist) {
+                    break;
+                }
+                setHeapSlot(index, c);
+                index = child;
+            }
+            setHeapSlot(index, last);
+        }
+        return heapSize;
+    }
+
+    /**
+     * Helper method that moves {@code v} up from heap slot {@code index} until its parent is
+     * no farther from the source.
+     *
+     * @param index the slot {@code v} starts at
+     * @param v a vertex id
+     */
+    private void siftUp(int index, int v) {
+        int dist = distance(v);
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            int p = work.getInt(parentIndex * 4L);
+            if (distance(p) <= dist) {
+                break;
+            }
+            setHeapSlot(index, p);
+            index = parentIndex;
+        }
+        setHeapSlot(index, v);
+    }
+
+    private void setHeapSlot(int index, int v) {
+        work.putInt(index * 4L, v);
+        state.putInt(v * (long) STATE_BYTES + HEAP_INDEX, index);
+    }
+
+    /** GETTER METHODS */
+
+    /**
+     * Checks if there is a directed edge from {@code u} to {@code v}
+     *
+     * @param u a vertex
+     * @param v a vertex
+     * @return {@code true} if the {@code u-v} edge is in the graph
+     * @throws IllegalArgumentException if a vertex does not exist
+     */
+    public boolean containsEdge(String u, String v) {
+        return findEdge(u, v) >= 0;
+    }
+
+    /**
+     * Returns the weight of directed edge from {@code u} to {@code v} if it exists
+     *
+     * @param u a vertex
+     * @param v a vertex
+     * @return the weight of the {@code u-v} edge
+     * @throws IllegalArgumentException if a vertex does not exist or edge doesn't exist
+     */
+    public int getWeight(String u, String v) {
+        long e = findEdge(u, v);
+        if (e < 0) {
+            throw new IllegalArgumentException("No u-v edge");
+        }
+        return weight(e);
+    }
+
+    /**
+     * @return the number of vertices in the graph
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of edges in the graph
+     */
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    private long findEdge(String u, String v) {
+        Integer from = ids.get(u);
+        Integer to = ids.get(v);
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Vertex does not exist");
+        }
+        long end = firstEdge(from + 1);
+        for (long e = firstEdge(from); e < end; e++) {
+            if (target(e) == to) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String source) {
+        Integer s = ids.get(source);
+        if (s == null) {
+            throw new IllegalArgumentException("Source is not in graph");
+        }
+        return s;
+    }
+
+    private long firstEdge(int v) {
+        return offsets.getLong(v * 8L);
+    }
+
+    private int target(long e) {
+        return edges.getInt(e * EDGE_BYTES);
+    }
+
+    private int weight(long e) {
+        return edges.getInt(e * EDGE_BYTES + 4);
+    }
+
+    private boolean discovered(int v) {
+        return state.getInt(v * (long) STATE_BYTES + DISCOVERED) != 0;
+    }
+
+    private int distance(int v) {
+        return state.getInt(v * (long) STATE_BYTES + DISTANCE);
+    }
+
+    /**
+     * A long-indexed run of off-heap memory made of buffers of at most 1 GiB each, since a
+     * single buffer is limited to 2 GiB. Every region is laid out so that no int or long
+     * straddles two buffers.
+     */
+    private static class Segments {
+        private static final int SHIFT = 30;
+        private static final long MASK = (1L << SHIFT) - 1;
+        private final ByteBuffer[] chunks;
+
+        private Segments(ByteBuffer[] chunks) {
+            this.chunks = chunks;
+        }
+
+        static Segments allocate(long bytes) {
+            ByteBuffer[] chunks = new ByteBuffer[chunkCount(bytes)];
+            for (int i = 0; i < chunks.length; i++) {
+                int length = (int) Math.min(1L << SHIFT, bytes - ((long) i << SHIFT));
+                chunks[i] = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new Segments(chunks);
+        }
+
+        static Segments map(FileChannel channel, long position, long bytes) throws IOException {
+            ByteBuffer[] chunks = new ByteBuffer[chunkCount(bytes)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << SHIFT;
+                long length = Math.min(1L << SHIFT, bytes - start);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, length)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new Segments(chunks);
+        }
+
+        private static int chunkCount(long bytes) {
+            return (int) ((bytes + MASK) >>> SHIFT);
+        }
+
+        int getInt(long i) {
+            return chunks[(int) (i >>> SHIFT)].getInt((int) (i & MASK));
+        }
+
+        void putInt(long i, int value) {
+            chunks[(int) (i >>> SHIFT)].putInt((int) (i & MASK), value);
+        }
+
+        long getLong(long i) {
+            return chunks[(int) (i >>> SHIFT)].getLong((int) (i & MASK));
+        }
+
+        void putLong(long i, long value) {
+            chunks[(int) (i >>> SHIFT)].putLong((int) (i & MASK), value);
+        }
+
+        void writeTo(FileChannel channel, long bytes) throws IOException {
+            for (int i = 0; i < chunks.length && bytes > 0; i++) {
+                ByteBuffer chunk = chunks[i].duplicate();
+                chunk.clear();
+                chunk.limit((int) Math.min(chunk.capacity(), bytes));
+                bytes -= chunk.limit();
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A closed-loop load generator for {@link QueryServer}. A fixed number of client threads each
+ * send one request at a time, with sources drawn at random from the graph, and the latency of
+ * every request is recorded. The report gives throughput and the 50th, 99th, and 99.9th
+ * percentile latencies; a tenth as many warm-up requests are sent first and not counted.
+ *
+ * Usage: {@code QueryLoadGenerator <edge-list> <requests> <clients> [algorithm] [sources] [url]}
+ *
+ * <ul>
+ * <li>{@code algorithm} is {@code bfs}, {@code dfs}, {@code dijkstra}, or {@code path}
+ *     (the default).</li>
+ * <li>{@code sources} limits the sources to that many vertices, so that concurrent requests
+ *     share searches; by default every vertex is used.</li>
+ * <li>{@code url} is the server to load, such as {@code http://127.0.0.1:8121}; by default a
+ *     server for the edge list is started in this process.</li>
+ * </ul>
+ */
+public class QueryLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || args.length > 6) {
+            System.err.println("Usage: QueryLoadGenerator <edge-list> <requests> <clients> "
+                    + "[bfs|dfs|dijkstra|path] [sources] [url]");
+            System.exit(2);
+        }
+        GraphSnapshot snapshot = GraphSnapshot.of(EdgeListReader.read(Paths.get(args[0])));
+        int requests = Integer.parseInt(args[1]);
+        int clients = Integer.parseInt(args[2]);
+        String algorithm = args.length > 3 ? args[3] : "path";
+        List<String> vertices = snapshot.getVertices();
+        int sources = args.length > 4 ? Math.min(Integer.parseInt(args[4]), vertices.size())
+                : vertices.size();
+        if (vertices.isEmpty()) {
+            throw new IllegalArgumentException("Graph is empty");
+        }
+        QueryServer embedded = null;
+        String url;
+        if (args.length > 5) {
+            url = args[5];
+        } else {
+            embedded = QueryServer.start(snapshot, 0);
+            url = "http://127.0.0.1:" + embedded.getPort();
+        }
+        try {
+            run(url, algorithm, vertices, sources, Math.max(1, requests / 10), clients, null);
+            long searchesBefore = embedded == null ? 0 : embedded.getSearchCount();
+            long sharedBefore = embedded == null ? 0 : embedded.getSharedSearchCount();
+            long[] latencies = new long[requests];
+            long start = System.nanoTime();
+            int errors = run(url, algorithm, vertices, sources, requests, clients, latencies);
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            System.out.printf("%d %s requests from %d clients in %.2f s: %.0f requests/s, "
+                    + "%d errors%n", requests, algorithm, clients, elapsed / 1e9,
+                    requests / (elapsed / 1e9), errors);
+            System.out.printf("latency ms: p50 %.3f  p99 %.3f  p999 %.3f  max %.3f%n",
+                    percentile(latencies, 0.5), percentile(latencies, 0.99),
+                    percentile(latencies, 0.999), latencies[requests - 1] / 1e6);
+            if (embedded != null) {
+                System.out.printf("searches run %d, shared %d%n",
+                        embedded.getSearchCount() - searchesBefore,
+                        embedded.getSharedSearchCount() - sharedBefore);
+            }
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    /**
+     * Helper method that sends {@code requests} requests from {@code clients} threads.
+     *
+     * @param latencies where to record the latency of every request in nanoseconds, or null
+     * @return the number of requests that failed
+     */
+    private static int run(String url, String algorithm, List<String> vertices, int sources,
+                           int requests, int clients, long[] latencies)
+            throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong seed = new AtomicLong(121);
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            threads[c] = new Thread(() -> {
+                Random random = new Random(seed.getAndIncrement());
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    String source = vertices.get(random.nextInt(sources));
+                    String query = "source=" + encode(source);
+                    if ("path".equals(algorithm)) {
+                        query += "&target=" + encode(vertices.get(random.nextInt(vertices.size())));
+                    }
+                    long start = System.nanoTime();
+                    int status = get(url + "/" + algorithm + "?" + query);
+                    if (latencies != null) {
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                    // An unreachable target is an answer, not a failure
+                    if (status != 200 && !(status == 404 && "path".equals(algorithm))) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }, "load-client-" + c);
+            threads[c].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return errors.get();
+    }
+
+    /**
+     * Helper method that sends one GET request and reads the whole response.
+     *
+     * @return the status code, or -1 if the request failed
+     */
+    private static int get(String address) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(address).openConnection();
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream()
+                    : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    byte[] buffer = new byte[1 << 14];
+                    while (in.read(buffer) >= 0) {
+                        // Drain the body so the connection can be reused
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of sorted nanosecond latencies, in milliseconds.
+     */
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
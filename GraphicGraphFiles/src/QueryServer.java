@@ -0,0 +1,343 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A headless HTTP server that answers graph queries from a shared {@link GraphSnapshot}. It
+ * listens on the loopback address only and answers GET requests with tab-separated text:
+ *
+ * <pre>
+ * /bfs?source=u              vertex, parent, depth              one line per vertex
+ * /dfs?source=u              vertex, parent, start, finish      one line per vertex
+ * /dijkstra?source=u         vertex, parent, distance           one line per reached vertex
+ * /path?source=u&amp;target=v   the distance, then the vertices of a shortest path
+ * </pre>
+ *
+ * Roots have an empty parent. A bad request gets 400, a path to an unreachable target gets 404,
+ * and a request that fails for any other reason gets 500, each with a one-line message.
+ *
+ * Every request runs on a thread of its own: a virtual thread where the JVM has them (Java 21 and
+ * later), and a pooled platform thread otherwise. Concurrent requests for the same search of the
+ * same snapshot share one computation, and {@code /path} shares the Dijkstra search of its source.
+ * The snapshot can be replaced at any time with {@link #setSnapshot}; requests already running
+ * finish on the snapshot they started with.
+ */
+public class QueryServer implements AutoCloseable {
+
+    private static final int BACKLOG = 1024;
+    // Read by the JDK's HTTP server once, when the first server is created
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile GraphSnapshot snapshot;
+    // Searches being computed, so concurrent requests for one search can wait for it instead
+    private final ConcurrentHashMap<SearchKey, CompletableFuture<GraphSnapshot.Search>> inFlight =
+            new ConcurrentHashMap<>();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong sharedSearches = new AtomicLong();
+
+    private QueryServer(HttpServer server, ExecutorService executor, GraphSnapshot snapshot) {
+        this.server = server;
+        this.executor = executor;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Starts a server on the loopback address.
+     *
+     * @param snapshot the graph to answer queries about
+     * @param port the port to listen on, or 0 for any free port
+     * @return the running server
+     * @throws IOException if the port cannot be bound
+     */
+    public static QueryServer start(GraphSnapshot snapshot, int port) throws IOException {
+        // Responses are written as headers then body; with Nagle's algorithm on, the body waits
+        // for the client's delayed ACK of the headers, adding about 40 ms to every request
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        HttpServer http = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        ExecutorService executor = newRequestExecutor();
+        QueryServer server = new QueryServer(http, executor, snapshot);
+        http.createContext("/bfs", server::handle);
+        http.createContext("/dfs", server::handle);
+        http.createContext("/dijkstra", server::handle);
+        http.createContext("/path", server::handle);
+        http.setExecutor(executor);
+        http.start();
+        return server;
+    }
+
+    /**
+     * Helper method that makes an executor running every task on a new virtual thread, or on a
+     * cached pool of platform threads if this JVM has no virtual threads.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Replaces the graph that new requests are answered from.
+     *
+     * @param snapshot the new graph
+     */
+    public void setSnapshot(GraphSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the graph that new requests are answered from
+     */
+    public GraphSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of searches run so far
+     */
+    public long getSearchCount() {
+        return searches.get();
+    }
+
+    /**
+     * @return the number of requests so far that waited for another request's search instead
+     *         of running their own
+     */
+    public long getSharedSearchCount() {
+        return sharedSearches.get();
+    }
+
+    /**
+     * Stops accepting requests and closes the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /** REQUEST HANDLING */
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only GET is supported\n");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String endpoint = exchange.getHttpContext().getPath();
+            String source = query.get("source");
+            if (source == null) {
+                respond(exchange, 400, "Missing source\n");
+                return;
+            }
+            GraphSnapshot current = snapshot;
+            StringBuilder body = new StringBuilder();
+            switch (endpoint) {
+                case "/bfs":
+                    writeForest(body, search(current, "bfs", source), false);
+                    break;
+                case "/dfs":
+                    writeForest(body, search(current, "dfs", source), true);
+                    break;
+                case "/dijkstra":
+                    writeForest(body, search(current, "dijkstra", source), false);
+                    break;
+                default:
+                    String target = query.get("target");
+                    if (target == null) {
+                        respond(exchange, 400, "Missing target\n");
+                        return;
+                    }
+                    if (!current.containsVertex(target)) {
+                        respond(exchange, 400, "Target is not in graph\n");
+                        return;
+                    }
+                    GraphSnapshot.Search tree = search(current, "dijkstra", source);
+                    List<String> path = tree.getPathTo(target);
+                    if (path == null) {
+                        respond(exchange, 404, "No path\n");
+                        return;
+                    }
+                    body.append(tree.getDistance(target)).append('\n');
+                    body.append(String.join("\t", path)).append('\n');
+            }
+            respond(exchange, 200, body.toString());
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "Internal error: " + e.getClass().getSimpleName() + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Helper method that runs a search, or waits for an identical one that is already running.
+     */
+    private GraphSnapshot.Search search(GraphSnapshot current, String algorithm, String source) {
+        SearchKey key = new SearchKey(current, algorithm, source);
+        CompletableFuture<GraphSnapshot.Search> mine = new CompletableFuture<>();
+        CompletableFuture<GraphSnapshot.Search> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            sharedSearches.incrementAndGet();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            searches.incrementAndGet();
+            GraphSnapshot.Search result;
+            switch (algorithm) {
+                case "bfs":
+                    result = current.bfsSearch(source);
+                    break;
+                case "dfs":
+                    result = current.dfsSearch(source);
+                    break;
+                default:
+                    result = current.dijkstraSearch(source);
+            }
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static void writeForest(StringBuilder body, GraphSnapshot.Search search,
+                                    boolean times) {
+        for (String v : search.getOrder()) {
+            String parent = search.getParent(v);
+            body.append(v).append('\t').append(parent == null ? "" : parent).append('\t');
+            if (times) {
+                body.append(search.getStart(v)).append('\t').append(search.getFinish(v));
+            } else {
+                body.append(search.getDistance(v));
+            }
+            body.append('\n');
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        HashMap<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        try {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return query;
+    }
+
+    /**
+     * Identifies a search: which snapshot, which algorithm, and which source.
+     */
+    private static final class SearchKey {
+        private final GraphSnapshot snapshot;
+        private final String algorithm;
+        private final String source;
+
+        SearchKey(GraphSnapshot snapshot, String algorithm, String source) {
+            this.snapshot = snapshot;
+            this.algorithm = algorithm;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SearchKey)) {
+                return false;
+            }
+            SearchKey other = (SearchKey) o;
+            return snapshot == other.snapshot && algorithm.equals(other.algorithm)
+                    && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(snapshot) * 31 + algorithm.hashCode()) * 31
+                    + source.hashCode();
+        }
+    }
+
+    /**
+     * Serves a graph read from a text edge list (see {@link EdgeListReader}) until the process
+     * is stopped.
+     *
+     * Usage: {@code QueryServer <edge-list> [port]}
+     *
+     * @param args the edge list file and optionally the port, 8121 by default
+     * @throws IOException if the edge list cannot be read or the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: QueryServer <edge-list> [port]");
+            System.exit(2);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8121;
+        GraphSnapshot snapshot = GraphSnapshot.of(EdgeListReader.read(Paths.get(args[0])));
+        QueryServer server = start(snapshot, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Serving " + snapshot.size() + " vertices and " + snapshot.edgeCount()
+                + " edges on http://127.0.0.1:" + server.getPort());
+    }
+}
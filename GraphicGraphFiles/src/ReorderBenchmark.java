@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures how each {@link VertexOrdering} affects the speed of searches on a scale-free graph.
+ *
+ * Usage: {@code ReorderBenchmark [vertices] [edges-per-vertex] [sources] [ordering|all]
+ * [plain|compressed]}
+ *
+ * The graph is grown by preferential attachment within communities, with a tenth of the edges
+ * between communities, every edge in both directions, and random weights. For each ordering it
+ * prints the time to reorder, the mean number of bits in the id gap of an edge (a measure of how
+ * far a search jumps in memory, lower is better), the size of the edges, and the mean time of a
+ * BFS, DFS, and Dijkstra search from a fixed set of sources. The first row is the snapshot as
+ * copied, numbered in {@code HashMap} order. With {@code compressed}, every snapshot is
+ * compressed after it is reordered (see {@link GraphSnapshot#compress}).
+ *
+ * Java cannot read the hardware cache counters, so to count cache misses, name one ordering
+ * ({@code copied}, {@code bfs}, {@code rcm}, {@code degree}, or {@code community}) to run it
+ * alone, under a profiler such as {@code perf stat -e cache-misses}.
+ */
+public class ReorderBenchmark {
+
+    // Timed repetitions of each search; the fastest is reported
+    private static final int ROUNDS = 3;
+    // The generated graph has communities of this many vertices, and this fraction of the edges
+    // of a new vertex stay inside its community
+    private static final int COMMUNITY_SIZE = 1000;
+    private static final double LOCAL_EDGES = 0.9;
+
+    public static void main(String[] args) {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int edgesPerVertex = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int sourceCount = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        String only = args.length > 3 && !args[3].equals("all") ? args[3] : null;
+        boolean compressed = args.length > 4 && args[4].equals("compressed");
+
+        Map<String, VertexOrdering> orderings = new LinkedHashMap<>();
+        orderings.put("copied", null);
+        orderings.put("bfs", VertexOrdering.BFS);
+        orderings.put("rcm", VertexOrdering.REVERSE_CUTHILL_MCKEE);
+        orderings.put("degree", VertexOrdering.DEGREE);
+        orderings.put("community", VertexOrdering.COMMUNITY);
+        if (only != null && !orderings.containsKey(only)) {
+            System.err.println("Unknown ordering " + only + "; expected one of "
+                    + orderings.keySet());
+            System.exit(2);
+        }
+
+        Random random = new Random(121);
+        GraphSnapshot copied = GraphSnapshot.of(scaleFree(vertices, edgesPerVertex, random));
+        if (compressed) {
+            copied = copied.compress();
+        }
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < sourceCount; i++) {
+            sources.add("v" + random.nextInt(vertices));
+        }
+        System.out.printf("%d vertices, %d edges, %d sources%n", copied.size(),
+                copied.edgeCount(), sources.size());
+        // Warm up the searches before anything is timed
+        time(copied, sources, "bfs");
+        time(copied, sources, "dfs");
+        time(copied, sources, "dijkstra");
+
+        System.out.printf("%-10s %11s %9s %9s %9s %9s %12s%n", "ordering", "reorder ms",
+                "gap bits", "edge MB", "bfs ms", "dfs ms", "dijkstra ms");
+        for (Map.Entry<String, VertexOrdering> entry : orderings.entrySet()) {
+            if (only != null && !only.equals(entry.getKey())) {
+                continue;
+            }
+            long start = System.nanoTime();
+            GraphSnapshot snapshot = entry.getValue() == null ? copied
+                    : copied.reorder(entry.getValue());
+            double reorderMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-10s %11.1f %9.2f %9.1f %9.3f %9.3f %12.3f%n", entry.getKey(),
+                    reorderMillis, snapshot.averageGapBits(), snapshot.edgeBytes() / 1e6,
+                    time(snapshot, sources, "bfs"), time(snapshot, sources, "dfs"),
+                    time(snapshot, sources, "dijkstra"));
+        }
+    }
+
+    /**
+     * Helper method that grows a graph by preferential attachment: each new vertex links to
+     * {@code m} earlier vertices chosen with probability proportional to their degree, most of
+     * them in its own community.
+     */
+    private static Graph scaleFree(int n, int m, Random random) {
+        Graph g = new Graph();
+        // Every edge end so far, overall and per community, so that a uniform pick from one is a
+        // pick by degree
+        int[] ends = new int[2 * n * m];
+        int endCount = 0;
+        int[][] localEnds = new int[(n + COMMUNITY_SIZE - 1) / COMMUNITY_SIZE][];
+        int[] localEndCount = new int[localEnds.length];
+        for (int v = 0; v < n; v++) {
+            g.addVertex("v" + v, false);
+            int c = v / COMMUNITY_SIZE;
+            if (localEnds[c] == null) {
+                localEnds[c] = new int[2 * COMMUNITY_SIZE * m];
+            }
+            for (int i = 0; i < m && v > 0; i++) {
+                boolean local = localEndCount[c] > 0 && random.nextDouble() < LOCAL_EDGES;
+                int u;
+                if (local) {
+                    u = localEnds[c][random.nextInt(localEndCount[c])];
+                } else {
+                    u = endCount == 0 ? 0 : ends[random.nextInt(endCount)];
+                }
+                if (u == v || g.getVertex("v" + v).getNeighbors().contains("v" + u)) {
+                    continue;
+                }
+                int weight = 1 + random.nextInt(100);
+                g.addDirectedEdge("v" + v, "v" + u, weight);
+                g.addDirectedEdge("v" + u, "v" + v, weight);
+                ends[endCount++] = u;
+                ends[endCount++] = v;
+                if (u / COMMUNITY_SIZE == c) {
+                    localEnds[c][localEndCount[c]++] = u;
+                    localEnds[c][localEndCount[c]++] = v;
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Helper method that times one kind of search from every source.
+     *
+     * @return the mean time of a search in milliseconds, in the fastest of the rounds
+     */
+    private static double time(GraphSnapshot snapshot, List<String> sources, String algorithm) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String source : sources) {
+                switch (algorithm) {
+                    case "bfs":
+                        snapshot.bfsSearch(source);
+                        break;
+                    case "dfs":
+                        snapshot.dfsSearch(source);
+                        break;
+                    default:
+                        snapshot.dijkstraSearch(source);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6 / sources.size();
+    }
+}
@@ -0,0 +1,91 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures how the speed of {@link SemiExternalGraph} searches depends on how vertex ids follow
+ * the traversal.
+ *
+ * Usage: {@code SemiExternalBenchmark [vertices] [extra-edges-per-vertex]}
+ *
+ * The graph is a path through every vertex, weight 1 per edge, plus the given number of random
+ * edges per vertex with weights large enough never to be on a shortest path. Vertex ids are
+ * numbered in order of first appearance in the edge list, so the graph is built twice: once
+ * listed in path order, so each BFS level reads the edges right after the last, and once in
+ * random order, so each level reads from an unrelated place in the file. It prints the time of
+ * a BFS and a Dijkstra search from the start of the path for each.
+ */
+public class SemiExternalBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int extraEdges = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        Path directory = Files.createTempDirectory("semi-external");
+        try {
+            System.out.printf("%d vertices, %d extra edges per vertex%n", vertices, extraEdges);
+            System.out.printf("%-8s %9s %9s %12s%n", "ids", "build ms", "bfs ms", "dijkstra ms");
+            run(directory, vertices, extraEdges, false);
+            run(directory, vertices, extraEdges, true);
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void run(Path directory, int vertices, int extraEdges, boolean shuffled)
+            throws IOException {
+        // order[i] is the vertex listed i-th, and so the vertex given id i
+        int[] order = new int[vertices];
+        for (int i = 0; i < vertices; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(121);
+        if (shuffled) {
+            for (int i = vertices - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+        }
+        Path edgeList = directory.resolve("edges.txt");
+        try (BufferedWriter out = Files.newBufferedWriter(edgeList)) {
+            for (int v : order) {
+                out.write("p" + v + "\n");
+            }
+            for (int v : order) {
+                if (v + 1 < vertices) {
+                    out.write("p" + v + " p" + (v + 1) + " 1\n");
+                }
+                for (int k = 0; k < extraEdges; k++) {
+                    int t = random.nextInt(vertices);
+                    if (t != v && t != v + 1) {
+                        out.write("p" + v + " p" + t + " " + vertices + "\n");
+                    }
+                }
+            }
+        }
+
+        Path file = directory.resolve("graph.bin");
+        long start = System.nanoTime();
+        SemiExternalGraph.build(edgeList, file);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        try (SemiExternalGraph graph = SemiExternalGraph.open(file)) {
+            start = System.nanoTime();
+            graph.bfs("p0");
+            double bfsMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            graph.dijkstra("p0", 1);
+            double dijkstraMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-8s %9.1f %9.1f %12.1f%n", shuffled ? "random" : "path",
+                    buildMillis, bfsMillis, dijkstraMillis);
+        }
+    }
+}
@@ -0,0 +1,752 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * A graph whose edges stay on disk, in the file layout written by {@link OffHeapGraph#save}.
+ * Only per-vertex state (labels, edge offsets, visited flags, distances, and parents) is kept in
+ * memory. Both searches work on whole frontiers at a time: the frontier is sorted by vertex id
+ * and the adjacency lists it needs are read in one forward pass over the file, so the disk only
+ * ever sees sequential reads.
+ *
+ * {@link #bfs} returns the same forest as {@link Graph#bfs} on the graph the file was written
+ * from. {@link #dijkstra} returns a shortest path tree with the same distances as
+ * {@link Graph#dijkstra} when no edge weight is negative; the two trees are identical whenever
+ * shortest paths are unique. Unlike {@link Graph#dijkstra}, it rejects negative weights on
+ * acyclic graphs too.
+ */
+public class SemiExternalGraph implements AutoCloseable {
+
+    // Most bytes read from the edge file at a time
+    private static final int BLOCK_BYTES = 1 << 22;
+    private static final long BLOCK_EDGES = BLOCK_BYTES / OffHeapGraph.EDGE_BYTES;
+    // A read goes on through the edges of the next vertex of a frontier if no more than this
+    // many unneeded edges lie between, rather than stopping and seeking past them
+    private static final long GAP_EDGES = 4096;
+    // Least bytes read at a time, as the operating system reads whole pages anyway
+    private static final long PAGE_EDGES = 4096 / OffHeapGraph.EDGE_BYTES;
+    // Number of edges sorted in memory at a time by {@link #build}
+    private static final int DEFAULT_RUN_EDGES = 1 << 22;
+
+    private final FileChannel channel;
+    // Labels of the vertices, indexed by vertex id
+    private final String[] labels;
+    // Maps a label back to its vertex id
+    private final HashMap<String, Integer> ids;
+    // (size + 1) entries: the index of the first edge of every vertex, plus the edge count
+    private final long[] offsets;
+    // File position of the first edge
+    private final long edgesPosition;
+    private final int size;
+    // Bucket width used by {@link #dijkstra(String)}, computed on first use
+    private int defaultDelta;
+
+    // Block of the edge file currently in memory, and the file position it was read from
+    private final ByteBuffer block;
+    private long blockPosition;
+
+    private SemiExternalGraph(FileChannel channel, String[] labels, long[] offsets,
+                              long edgesPosition) {
+        this.channel = channel;
+        this.labels = labels;
+        this.size = labels.length;
+        this.ids = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ids.put(labels[i], i);
+        }
+        this.offsets = offsets;
+        this.edgesPosition = edgesPosition;
+        this.defaultDelta = 0;
+        this.block = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.block.limit(0);
+        this.blockPosition = 0;
+    }
+
+    /**
+     * Opens a graph file written by {@link OffHeapGraph#save} or {@link #build}. The labels and
+     * edge offsets are read into memory; the edges are left on disk.
+     *
+     * @param file a graph file
+     * @return the opened graph, which must be closed after use
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a graph file
+     */
+    public static SemiExternalGraph open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            DataInputStream in = inputStream(channel, 0);
+            if (readInt(in) != OffHeapGraph.MAGIC || readInt(in) != OffHeapGraph.VERSION) {
+                throw new IllegalArgumentException("Not an off-heap graph file");
+            }
+            int vertexCount = readInt(in);
+            readInt(in);
+            readLong(in);
+            long labelsPosition = readLong(in);
+            long[] offsets = new long[vertexCount + 1];
+            for (int i = 0; i <= vertexCount; i++) {
+                offsets[i] = readLong(in);
+            }
+
+            in = inputStream(channel, labelsPosition);
+            String[] labels = new String[vertexCount];
+            for (int i = 0; i < vertexCount; i++) {
+                byte[] bytes = new byte[readInt(in)];
+                in.readFully(bytes);
+                labels[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            long edgesPosition = OffHeapGraph.HEADER_BYTES + (vertexCount + 1L) * 8;
+            return new SemiExternalGraph(channel, labels, offsets, edgesPosition);
+        } catch (EOFException e) {
+            channel.close();
+            throw new IllegalArgumentException("Not an off-heap graph file");
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a graph file from a text edge list without holding the edges in memory. Each line
+     * is either {@code u v weight} for a directed edge or a lone {@code u} for a vertex; blank
+     * lines and lines starting with {@code #} are skipped. As in {@link Graph#addDirectedEdge},
+     * a repeated edge keeps its first weight.
+     *
+     * The edges are sorted by source in runs that fit in memory, and the runs are merged into
+     * the edge region of {@code out}. Vertices are numbered in order of first appearance and
+     * every vertex keeps its edges in input order.
+     *
+     * @param edgeList a text edge list
+     * @param out the graph file to write
+     * @throws IOException if a file cannot be read or written
+     * @throws IllegalArgumentException if a line is malformed or is an edge from a vertex to
+     *                                  itself
+     */
+    public static void build(Path edgeList, Path out) throws IOException {
+        build(edgeList, out, DEFAULT_RUN_EDGES);
+    }
+
+    /**
+     * Builds a graph file from a text edge list, sorting at most {@code runEdges} edges in memory
+     * at a time.
+     *
+     * @param edgeList a text edge list
+     * @param out the graph file to write
+     * @param runEdges the number of edges per sorted run
+     * @throws IOException if a file cannot be read or written
+     * @throws IllegalArgumentException if {@code runEdges} is not positive, or a line is
+     *                                  malformed or is an edge from a vertex to itself
+     * @see #build(Path, Path)
+     */
+    public static void build(Path edgeList, Path out, int runEdges) throws IOException {
+        if (runEdges <= 0) {
+            throw new IllegalArgumentException("Run size must be positive");
+        }
+        Runs runs = new Runs(out, runEdges);
+        Path edgesFile = Files.createTempFile(out.toAbsolutePath().getParent(), "edges", ".tmp");
+        try {
+            // Pass 1: number the vertices and write the edges out in runs sorted by source
+            try (BufferedReader reader = Files.newBufferedReader(edgeList)) {
+                EdgeListReader.parse(reader, runs);
+            }
+            runs.flush();
+            ArrayList<String> labels = runs.labels;
+
+            // Pass 2: merge the runs into one edge region, dropping repeated edges
+            int vertexCount = labels.size();
+            long[] degrees = new long[vertexCount];
+            long edgeCount = mergeRuns(runs.files, edgesFile, degrees);
+
+            // Pass 3: write the header and offsets, copy the edges, and append the labels
+            try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long edgesPosition = OffHeapGraph.HEADER_BYTES + (vertexCount + 1L) * 8;
+                long labelsPosition = edgesPosition + edgeCount * OffHeapGraph.EDGE_BYTES;
+                DataOutputStream data = outputStream(channel);
+                writeInt(data, OffHeapGraph.MAGIC);
+                writeInt(data, OffHeapGraph.VERSION);
+                writeInt(data, vertexCount);
+                writeInt(data, 0);
+                writeLong(data, edgeCount);
+                writeLong(data, labelsPosition);
+                long edge = 0;
+                for (int i = 0; i < vertexCount; i++) {
+                    writeLong(data, edge);
+                    edge += degrees[i];
+                }
+                writeLong(data, edge);
+                data.flush();
+
+                try (FileChannel edges = FileChannel.open(edgesFile, StandardOpenOption.READ)) {
+                    long copied = 0;
+                    long length = edges.size();
+                    while (copied < length) {
+                        copied += edges.transferTo(copied, length - copied, channel);
+                    }
+                }
+
+                data = outputStream(channel);
+                for (String label : labels) {
+                    byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+                    writeInt(data, bytes.length);
+                    data.write(bytes);
+                }
+                data.flush();
+            }
+        } finally {
+            Files.deleteIfExists(edgesFile);
+            for (Path run : runs.files) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * The first pass of {@link #build}: numbers the vertices of an edge list in order of first
+     * appearance and buffers its edges, writing them out in sorted runs as the buffer fills.
+     */
+    private static final class Runs implements EdgeListReader.Handler {
+        private final Path out;
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private final ArrayList<String> labels = new ArrayList<>();
+        private final ArrayList<Path> files = new ArrayList<>();
+        // Buffered edges: source id and input position, target id, and weight
+        private final long[] keys;
+        private final int[] targets;
+        private final int[] weights;
+        private int count;
+
+        Runs(Path out, int runEdges) {
+            this.out = out;
+            this.keys = new long[runEdges];
+            this.targets = new int[runEdges];
+            this.weights = new int[runEdges];
+            this.count = 0;
+        }
+
+        @Override
+        public void vertex(String u) {
+            idOf(u, ids, labels);
+        }
+
+        @Override
+        public void edge(String u, String v, int weight) throws IOException {
+            keys[count] = ((long) idOf(u, ids, labels) << 32) | count;
+            targets[count] = idOf(v, ids, labels);
+            weights[count] = weight;
+            count++;
+            if (count == keys.length) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes out the buffered edges, if any, as one more run.
+         */
+        void flush() throws IOException {
+            if (count > 0) {
+                files.add(writeRun(out, keys, targets, weights, count));
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Helper method that looks up the id of {@code label}, numbering it if it is new.
+     */
+    private static int idOf(String label, HashMap<String, Integer> ids, ArrayList<String> labels) {
+        Integer id = ids.get(label);
+        if (id == null) {
+            id = labels.size();
+            ids.put(label, id);
+            labels.add(label);
+        }
+        return id;
+    }
+
+    /**
+     * Helper method that sorts the first {@code count} buffered edges by source, keeping input
+     * order among edges with the same source, and writes them to a temporary run file as
+     * (source, target, weight) records.
+     */
+    private static Path writeRun(Path out, long[] keys, int[] targets, int[] weights, int count)
+            throws IOException {
+        Arrays.sort(keys, 0, count);
+        Path run = Files.createTempFile(out.toAbsolutePath().getParent(), "run", ".tmp");
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < count; i++) {
+                int index = (int) keys[i];
+                data.writeInt((int) (keys[i] >>> 32));
+                data.writeInt(targets[index]);
+                data.writeInt(weights[index]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Helper method that merges sorted runs into {@code edgesFile} as (target, weight) records.
+     * Ties between runs are broken by run order, so every vertex keeps its edges in input order.
+     *
+     * @return the number of edges written
+     */
+    private static long mergeRuns(ArrayList<Path> runs, Path edgesFile, long[] degrees)
+            throws IOException {
+        DataInputStream[] inputs = new DataInputStream[runs.size()];
+        // Heads of the runs, ordered by source and then by run
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> a[0] != b[0]
+                ? Integer.compare(a[0], b[0]) : Integer.compare(a[3], b[3]));
+        long edgeCount = 0;
+        try (FileChannel channel = FileChannel.open(edgesFile, StandardOpenOption.WRITE)) {
+            DataOutputStream data = outputStream(channel);
+            for (int r = 0; r < inputs.length; r++) {
+                inputs[r] = new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(runs.get(r)), 1 << 16));
+                int[] head = new int[4];
+                head[3] = r;
+                if (readRecord(inputs[r], head)) {
+                    heads.add(head);
+                }
+            }
+            int source = -1;
+            HashSet<Integer> seen = new HashSet<>();
+            while (!heads.isEmpty()) {
+                int[] head = heads.poll();
+                if (head[0] != source) {
+                    source = head[0];
+                    seen.clear();
+                }
+                if (seen.add(head[1])) {
+                    writeInt(data, head[1]);
+                    writeInt(data, head[2]);
+                    degrees[source]++;
+                    edgeCount++;
+                }
+                if (readRecord(inputs[head[3]], head)) {
+                    heads.add(head);
+                }
+            }
+            data.flush();
+        } finally {
+            for (DataInputStream input : inputs) {
+                if (input != null) {
+                    input.close();
+                }
+            }
+        }
+        return edgeCount;
+    }
+
+    private static boolean readRecord(DataInputStream in, int[] record) throws IOException {
+        try {
+            record[0] = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        record[1] = in.readInt();
+        record[2] = in.readInt();
+        return true;
+    }
+
+    /** GRAPH ALGORITHMS */
+
+    /**
+     * The Breadth-First Search algorithm, run one level at a time. The adjacency lists of a
+     * level are read in vertex id order, and every newly reached vertex keeps the candidate
+     * parent that comes first in queue order, so the result is the forest a FIFO queue gives.
+     *
+     * @param source the vertex the search will initially start at.
+     * @return a graph representation of the BFS forest
+     * @throws IllegalArgumentException if the source is not in the graph
+     * @throws IOException if the edge file cannot be read
+     */
+    public Graph bfs(String source) throws IOException {
+        int s = indexOf(source);
+        boolean[] discovered = new boolean[size];
+        // For every vertex reached by the current level: (parent queue position, edge index)
+        long[] best = new long[size];
+        int[] parentWeight = new int[size];
+        Arrays.fill(best, Long.MAX_VALUE);
+        int[] frontier = new int[size];
+        int[] next = new int[size];
+        long[] sorted = new long[size];
+        int[] sortedIds = new int[size];
+        int[] counts = new int[size + 1];
+
+        Graph bfsForest = new Graph();
+        bfsForest.addVertex(source, true);
+        bfsVisit(bfsForest, s, discovered, best, parentWeight, frontier, next, sorted, sortedIds,
+                counts);
+        for (int v = 0; v < size; v++) {
+            if (!discovered[v]) {
+                bfsForest.addVertex(labels[v], true);
+                bfsVisit(bfsForest, v, discovered, best, parentWeight, frontier, next, sorted,
+                        sortedIds, counts);
+            }
+        }
+        return bfsForest;
+    }
+
+    /**
+     * Helper method to visit all vertices reachable from {@code u} level by level and add them
+     * according to the BFS forest.
+     */
+    private void bfsVisit(Graph forest, int u, boolean[] discovered, long[] best,
+                          int[] parentWeight, int[] frontier, int[] next, long[] sorted,
+                          int[] sortedIds, int[] counts) throws IOException {
+        discovered[u] = true;
+        frontier[0] = u;
+        int frontierSize = 1;
+        while (frontierSize > 0) {
+            // Sort the level by vertex id, remembering each vertex's position in the queue
+            for (int i = 0; i < frontierSize; i++) {
+                sorted[i] = ((long) frontier[i] << 32) | i;
+            }
+            Arrays.sort(sorted, 0, frontierSize);
+            for (int i = 0; i < frontierSize; i++) {
+                sortedIds[i] = (int) (sorted[i] >>> 32);
+            }
+
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int visited = sortedIds[i];
+                long position = sorted[i] & 0xFFFFFFFFL;
+                long first = offsets[visited];
+                long end = offsets[visited + 1];
+                for (long e = first; e < end; e++) {
+                    long record = edgePosition(e, sortedIds, i, frontierSize);
+                    int t = block.getInt((int) record);
+                    if (!discovered[t]) {
+                        long key = (position << 32) | (e - first);
+                        if (best[t] == Long.MAX_VALUE) {
+                            next[nextSize++] = t;
+                        }
+                        if (key < best[t]) {
+                            best[t] = key;
+                            parentWeight[t] = block.getInt((int) record + 4);
+                        }
+                    }
+                }
+            }
+
+            // Put the next level in the order a FIFO queue would have enqueued it: grouped by
+            // the parent's queue position, then by edge index within the parent's list
+            Arrays.fill(counts, 0, frontierSize + 1, 0);
+            for (int i = 0; i < nextSize; i++) {
+                counts[(int) (best[next[i]] >>> 32) + 1]++;
+            }
+            for (int p = 0; p < frontierSize; p++) {
+                counts[p + 1] += counts[p];
+            }
+            for (int i = 0; i < nextSize; i++) {
+                int t = next[i];
+                sorted[counts[(int) (best[t] >>> 32)]++] = (best[t] << 32) | t;
+            }
+            // counts[p] now marks the end of parent p's group
+            int groupStart = 0;
+            for (int p = 0; p < frontierSize; p++) {
+                Arrays.sort(sorted, groupStart, counts[p]);
+                for (int i = groupStart; i < counts[p]; i++) {
+                    int t = (int) sorted[i];
+                    discovered[t] = true;
+                    best[t] = Long.MAX_VALUE;
+                    forest.addDirectedEdge(labels[frontier[p]], labels[t], parentWeight[t]);
+                    next[i] = t;
+                }
+                groupStart = counts[p];
+            }
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize;
+        }
+    }
+
+    /**
+     * Single-source shortest paths with buckets of distance width {@code delta} chosen from the
+     * mean edge weight.
+     *
+     * @param source the root of the shortest path tree
+     * @return the shortest path tree rooted at {@code source}
+     * @throws IllegalArgumentException if the source is not in the graph or a path starting
+     *                                  from it contains a negative edge weight
+     * @throws IOException if the edge file cannot be read
+     * @see #dijkstra(String, int)
+     */
+    public Graph dijkstra(String source) throws IOException {
+        if (defaultDelta == 0) {
+            defaultDelta = meanWeight();
+        }
+        return dijkstra(source, defaultDelta);
+    }
+
+    /**
+     * Single-source shortest paths with buckets of distance width {@code delta}. The vertices
+     * of the lowest non-empty bucket are relaxed together, in vertex id order with one forward
+     * pass over the file, until no distance in the bucket improves; the whole bucket is then
+     * settled. Wider buckets mean fewer, longer passes at the cost of some repeated relaxations.
+     *
+     * @param source the root of the shortest path tree
+     * @param delta the width of a bucket
+     * @return the shortest path tree rooted at {@code source}
+     * @throws IllegalArgumentException if the source is not in the graph, {@code delta} is not
+     *                                  positive, or a path starting from the source contains a
+     *                                  negative edge weight
+     * @throws IOException if the edge file cannot be read
+     */
+    public Graph dijkstra(String source, int delta) throws IOException {
+        int s = indexOf(source);
+        if (delta <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive");
+        }
+        int[] distance = new int[size];
+        int[] parent = new int[size];
+        int[] parentWeight = new int[size];
+        boolean[] settled = new boolean[size];
+        // Marks vertices already in the current pass so they are relaxed once per pass
+        boolean[] queued = new boolean[size];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(parent, -1);
+        distance[s] = 0;
+        TreeMap<Integer, IntList> buckets = new TreeMap<>();
+        buckets.computeIfAbsent(0, k -> new IntList()).add(s);
+        IntList pass = new IntList();
+        IntList nextPass = new IntList();
+
+        while (!buckets.isEmpty()) {
+            int bucket = buckets.firstKey();
+            IntList candidates = buckets.remove(bucket);
+            pass.clear();
+            for (int i = 0; i < candidates.size; i++) {
+                int v = candidates.items[i];
+                if (!settled[v] && !queued[v] && distance[v] / delta == bucket) {
+                    queued[v] = true;
+                    pass.add(v);
+                }
+            }
+            while (pass.size > 0) {
+                Arrays.sort(pass.items, 0, pass.size);
+                nextPass.clear();
+                // Vertices of the current bucket are final once no pass improves them, and
+                // no later bucket can improve them, so they are marked settled right away
+                for (int i = 0; i < pass.size; i++) {
+                    int curr = pass.items[i];
+                    queued[curr] = false;
+                    settled[curr] = true;
+                }
+                for (int i = 0; i < pass.size; i++) {
+                    int curr = pass.items[i];
+                    for (long e = offsets[curr]; e < offsets[curr + 1]; e++) {
+                        long record = edgePosition(e, pass.items, i, pass.size);
+                        int t = block.getInt((int) record);
+                        int edgeWeight = block.getInt((int) record + 4);
+                        if (edgeWeight < 0) {
+                            throw new IllegalArgumentException("A path starting from source " +
+                                    "contains negative edge weight");
+                        }
+                        int newDistance = distance[curr] + edgeWeight;
+                        if (newDistance < distance[t]) {
+                            distance[t] = newDistance;
+                            parent[t] = curr;
+                            parentWeight[t] = edgeWeight;
+                            if (newDistance / delta == bucket) {
+                                // Improved within this bucket: relax it again in the next pass
+                                if (!queued[t]) {
+                                    queued[t] = true;
+                                    nextPass.add(t);
+                                }
+                            } else {
+                                buckets.computeIfAbsent(newDistance / delta,
+                                        k -> new IntList()).add(t);
+                            }
+                        }
+                    }
+                }
+                IntList swap = pass;
+                pass = nextPass;
+                nextPass = swap;
+            }
+        }
+
+        Graph shortestPathTree = new Graph();
+        shortestPathTree.addVertex(source, true);
+        for (int v = 0; v < size; v++) {
+            if (distance[v] != Integer.MAX_VALUE) {
+                shortestPathTree.addVertex(labels[v], false);
+            }
+        }
+        for (int v = 0; v < size; v++) {
+            if (parent[v] >= 0) {
+                shortestPathTree.addDirectedEdge(labels[parent[v]], labels[v], parentWeight[v]);
+            }
+        }
+        return shortestPathTree;
+    }
+
+    /**
+     * Helper method that computes the mean positive edge weight with one sequential pass.
+     *
+     * @return the mean positive edge weight, or 1 if there are none
+     */
+    private int meanWeight() throws IOException {
+        long total = 0;
+        long count = 0;
+        long edgeCount = offsets[size];
+        for (long e = 0; e < edgeCount; e++) {
+            int weight = block.getInt((int) edgePosition(e, null, 0, 0) + 4);
+            if (weight > 0) {
+                total += weight;
+                count++;
+            }
+        }
+        return count == 0 ? 1 : (int) Math.max(1, total / count);
+    }
+
+    /**
+     * Helper method that makes sure edge {@code e} is in the block in memory. On a miss it reads
+     * forward from {@code e}, but only as far as the edges the search will need next: the rest
+     * of the list of {@code vertices[i]}, then the lists of the vertices after it as long as the
+     * gap before each is small. A sparse frontier thus costs one short read per vertex instead
+     * of a whole block.
+     *
+     * @param e an edge index
+     * @param vertices the vertices whose edges are being read, sorted by id, or {@code null} to
+     *                 read whole blocks in file order
+     * @param i the index in {@code vertices} of the vertex that edge {@code e} belongs to
+     * @param count the number of vertices in {@code vertices}
+     * @return the position of the edge's record within the block
+     */
+    private long edgePosition(long e, int[] vertices, int i, int count) throws IOException {
+        long position = edgesPosition + e * OffHeapGraph.EDGE_BYTES;
+        if (position >= blockPosition
+                && position + OffHeapGraph.EDGE_BYTES <= blockPosition + block.limit()) {
+            return position - blockPosition;
+        }
+        long limit = Math.min(e + BLOCK_EDGES, offsets[size]);
+        if (vertices != null) {
+            long end = Math.min(offsets[vertices[i] + 1], limit);
+            for (int j = i + 1; j < count && end < limit; j++) {
+                int v = vertices[j];
+                if (offsets[v] - end > GAP_EDGES) {
+                    break;
+                }
+                end = Math.min(offsets[v + 1], limit);
+            }
+            limit = Math.max(end, Math.min(e + PAGE_EDGES, limit));
+        }
+        block.clear();
+        block.limit((int) ((limit - e) * OffHeapGraph.EDGE_BYTES));
+        blockPosition = position;
+        while (block.hasRemaining()) {
+            int read = channel.read(block, blockPosition + block.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        block.flip();
+        if (block.limit() < OffHeapGraph.EDGE_BYTES) {
+            throw new IOException("Edge file is truncated");
+        }
+        return 0;
+    }
+
+    /** GETTER METHODS */
+
+    /**
+     * @return the number of vertices in the graph
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of edges in the graph
+     */
+    public long edgeCount() {
+        return offsets[size];
+    }
+
+    private int indexOf(String source) {
+        Integer s = ids.get(source);
+        if (s == null) {
+            throw new IllegalArgumentException("Source is not in graph");
+        }
+        return s;
+    }
+
+    /**
+     * Closes the edge file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static DataInputStream inputStream(FileChannel channel, long position)
+            throws IOException {
+        return new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(position)), 1 << 16));
+    }
+
+    private static DataOutputStream outputStream(FileChannel channel) {
+        return new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    // Graph files are little-endian, while Data streams are big-endian
+
+    private static int readInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static long readLong(DataInputStream in) throws IOException {
+        return Long.reverseBytes(in.readLong());
+    }
+
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        out.writeInt(Integer.reverseBytes(value));
+    }
+
+    private static void writeLong(DataOutputStream out, long value) throws IOException {
+        out.writeLong(Long.reverseBytes(value));
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static class IntList {
+        private int[] items = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * A listener's subscription to the changes of a {@link Graph}, returned by
+ * {@link Graph#subscribe}.
+ *
+ * Changes are buffered per subscription and delivered in batches on the subscription's
+ * executor, one batch at a time. While a batch is being delivered, new changes pile up in the
+ * buffer, coalesced per vertex and per edge, so a slow listener gets fewer, larger batches and
+ * never slows down the thread changing the graph. If the buffer still grows past its capacity it
+ * is thrown away and the listener is sent a single {@code OVERFLOW} event.
+ */
+public class Subscription implements AutoCloseable {
+
+    private final Graph graph;
+    private final GraphListener listener;
+    private final Executor executor;
+    private final int capacity;
+    private final Object lock = new Object();
+    // Pending events, keyed by the vertex or edge they change, in the order they were made
+    private LinkedHashMap<List<String>, GraphEvent> pending = new LinkedHashMap<>();
+    // Whether events were dropped since the last batch
+    private boolean overflowed = false;
+    // Whether a batch has been handed to the executor and not finished yet
+    private boolean delivering = false;
+    private volatile boolean closed = false;
+
+    Subscription(Graph graph, GraphListener listener, Executor executor, int capacity) {
+        this.graph = graph;
+        this.listener = listener;
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds an event to the buffer, combining it with the pending event for the same vertex or
+     * edge, and schedules a delivery if none is scheduled.
+     */
+    void publish(GraphEvent event) {
+        List<String> key = event.getV() == null ? Collections.singletonList(event.getU())
+                : Arrays.asList(event.getU(), event.getV());
+        synchronized (lock) {
+            if (closed || overflowed) {
+                return;
+            }
+            GraphEvent earlier = pending.get(key);
+            if (earlier == null) {
+                pending.put(key, event);
+            } else {
+                GraphEvent combined = earlier.then(event);
+                if (combined == null) {
+                    pending.remove(key);
+                } else {
+                    pending.put(key, combined);
+                }
+            }
+            if (pending.size() > capacity) {
+                pending = new LinkedHashMap<>();
+                overflowed = true;
+            }
+            if (delivering || (pending.isEmpty() && !overflowed)) {
+                return;
+            }
+            delivering = true;
+        }
+        executor.execute(this::deliver);
+    }
+
+    /**
+     * Helper method that hands batches to the listener until the buffer is empty.
+     */
+    private void deliver() {
+        while (true) {
+            List<GraphEvent> batch;
+            synchronized (lock) {
+                if (closed || (pending.isEmpty() && !overflowed)) {
+                    delivering = false;
+                    return;
+                }
+                if (overflowed) {
+                    batch = Collections.singletonList(GraphEvent.OVERFLOW);
+                    overflowed = false;
+                } else {
+                    batch = Collections.unmodifiableList(new ArrayList<>(pending.values()));
+                }
+                pending = new LinkedHashMap<>();
+            }
+            try {
+                listener.onEvents(batch);
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    delivering = false;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stops delivering events to the listener. A batch that is already being delivered is not
+     * interrupted.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        graph.unsubscribe(this);
+        synchronized (lock) {
+            pending = new LinkedHashMap<>();
+        }
+    }
+}
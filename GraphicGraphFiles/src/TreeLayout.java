@@ -0,0 +1,359 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A tidy drawing of a BFS, DFS, or shortest path forest, computed with the linear-time
+ * Reingold-Tilford algorithm of Buchheim, Junger, and Leipert. Every subtree is drawn the same
+ * way wherever it appears, parents are centered over their children, and neighboring nodes are
+ * at least one unit apart, so the width of the drawing grows with the number of leaves rather
+ * than the number of vertices. The trees of the forest are laid out side by side in the order
+ * of {@link Graph#getRoots}.
+ *
+ * Both walks of the algorithm are iterative, so trees of any depth can be laid out.
+ */
+public class TreeLayout {
+
+    // Nodes are numbered in pre-order; node 0 is a virtual root whose children are the roots
+    private final String[] labels;
+    private final int[] parent;
+    private final int[] depth;
+    private final double[] x;
+    // Children of node v are children[childStart[v]] to children[childStart[v + 1] - 1]
+    private final int[] childStart;
+    private final int[] children;
+    private final double width;
+    private final int height;
+
+    private TreeLayout(String[] labels, int[] parent, int[] depth, int[] childStart,
+                       int[] children) {
+        this.labels = labels;
+        this.parent = parent;
+        this.depth = depth;
+        this.childStart = childStart;
+        this.children = children;
+        this.x = new double[labels.length];
+        layOut();
+        double max = 0;
+        int deepest = 0;
+        for (int v = 1; v < labels.length; v++) {
+            max = Math.max(max, x[v]);
+            deepest = Math.max(deepest, depth[v]);
+        }
+        this.width = max;
+        this.height = deepest;
+    }
+
+    /**
+     * Lays out a forest returned by {@link Graph#bfs}, {@link Graph#dfs}, or
+     * {@link Graph#dijkstra}.
+     *
+     * @param forest a forest
+     * @return the layout of {@code forest}
+     */
+    public static TreeLayout of(Graph forest) {
+        int n = forest.getAdjacencyList().size() + 1;
+        String[] labels = new String[n];
+        int[] parent = new int[n];
+        int[] depth = new int[n];
+        parent[0] = -1;
+
+        // Number the nodes in pre-order with a stack of (label, parent) pairs
+        ArrayList<String> roots = new ArrayList<>();
+        for (Map.Entry<String, Vertex> e : forest.getRoots()) {
+            if (forest.getVertex(e.getKey()) == e.getValue()) {
+                roots.add(e.getKey());
+            }
+        }
+        String[] stackLabels = new String[n];
+        int[] stackParents = new int[n];
+        int top = 0;
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            stackLabels[top] = roots.get(i);
+            stackParents[top++] = 0;
+        }
+        int count = 1;
+        while (top > 0) {
+            top--;
+            if (count == n) {
+                throw new IllegalArgumentException("Graph is not a forest");
+            }
+            int v = count++;
+            labels[v] = stackLabels[top];
+            parent[v] = stackParents[top];
+            depth[v] = parent[v] == 0 ? 0 : depth[parent[v]] + 1;
+            String[] kids = forest.getVertex(labels[v]).getNeighbors().toArray(new String[0]);
+            if (top + kids.length > n) {
+                throw new IllegalArgumentException("Graph is not a forest");
+            }
+            for (int i = kids.length - 1; i >= 0; i--) {
+                stackLabels[top] = kids[i];
+                stackParents[top++] = v;
+            }
+        }
+        labels = Arrays.copyOf(labels, count);
+        parent = Arrays.copyOf(parent, count);
+        depth = Arrays.copyOf(depth, count);
+
+        // In pre-order every node's children appear left to right, so filling the children
+        // array in id order keeps sibling order
+        int[] childStart = new int[count + 1];
+        for (int v = 1; v < count; v++) {
+            childStart[parent[v] + 1]++;
+        }
+        for (int v = 0; v < count; v++) {
+            childStart[v + 1] += childStart[v];
+        }
+        int[] next = Arrays.copyOf(childStart, count);
+        int[] children = new int[count - 1];
+        for (int v = 1; v < count; v++) {
+            children[next[parent[v]]++] = v;
+        }
+        return new TreeLayout(labels, parent, depth, childStart, children);
+    }
+
+    /** LAYOUT */
+
+    /**
+     * Runs both walks of the algorithm: a post-order walk that places every node relative to
+     * its siblings, and a pre-order walk that sums the relative offsets into final positions.
+     */
+    private void layOut() {
+        int n = labels.length;
+        double[] prelim = new double[n];
+        double[] mod = new double[n];
+        double[] shift = new double[n];
+        double[] change = new double[n];
+        int[] thread = new int[n];
+        int[] ancestor = new int[n];
+        int[] number = new int[n];
+        // The default ancestor of each node's children while they are being placed
+        int[] defaultAncestor = new int[n];
+        Arrays.fill(thread, -1);
+        for (int v = 0; v < n; v++) {
+            ancestor[v] = v;
+            for (int i = childStart[v]; i < childStart[v + 1]; i++) {
+                number[children[i]] = i - childStart[v];
+            }
+            defaultAncestor[v] = childCount(v) > 0 ? children[childStart[v]] : -1;
+        }
+
+        State s = new State(prelim, mod, shift, change, thread, ancestor, number);
+        // First walk: a left-to-right post-order, with an explicit stack of child cursors
+        int[] stack = new int[n];
+        int[] cursor = new int[n];
+        int top = 0;
+        stack[0] = 0;
+        cursor[0] = childStart[0];
+        while (top >= 0) {
+            int v = stack[top];
+            if (cursor[top] < childStart[v + 1]) {
+                int w = children[cursor[top]++];
+                stack[++top] = w;
+                cursor[top] = childStart[w];
+                continue;
+            }
+            top--;
+            // All of v's children have been placed; place v
+            int left = leftSibling(v, number);
+            if (childCount(v) == 0) {
+                prelim[v] = left >= 0 ? prelim[left] + 1 : 0;
+            } else {
+                executeShifts(v, s);
+                double midpoint = (prelim[children[childStart[v]]]
+                        + prelim[children[childStart[v + 1] - 1]]) / 2;
+                if (left >= 0) {
+                    prelim[v] = prelim[left] + 1;
+                    mod[v] = prelim[v] - midpoint;
+                } else {
+                    prelim[v] = midpoint;
+                }
+            }
+            if (v != 0) {
+                defaultAncestor[parent[v]] = apportion(v, defaultAncestor[parent[v]], s);
+            }
+        }
+
+        // Second walk: pre-order, so parents are final before their children
+        double[] modSum = new double[n];
+        double min = Double.MAX_VALUE;
+        for (int v = 0; v < n; v++) {
+            if (v > 0) {
+                modSum[v] = modSum[parent[v]] + mod[parent[v]];
+                x[v] = prelim[v] + modSum[v];
+                min = Math.min(min, x[v]);
+            }
+        }
+        for (int v = 1; v < n; v++) {
+            x[v] -= min;
+        }
+    }
+
+    /**
+     * Helper method that pushes the subtree of {@code v} right until it clears the subtrees of
+     * its left siblings, threading contours as it goes.
+     *
+     * @return the new default ancestor
+     */
+    private int apportion(int v, int defaultAncestor, State s) {
+        int w = leftSibling(v, s.number);
+        if (w < 0) {
+            return defaultAncestor;
+        }
+        int vip = v;
+        int vop = v;
+        int vim = w;
+        int vom = children[childStart[parent[v]]];
+        double sip = s.mod[vip];
+        double sop = s.mod[vop];
+        double sim = s.mod[vim];
+        double som = s.mod[vom];
+        while (nextRight(vim, s) >= 0 && nextLeft(vip, s) >= 0) {
+            vim = nextRight(vim, s);
+            vip = nextLeft(vip, s);
+            vom = nextLeft(vom, s);
+            vop = nextRight(vop, s);
+            s.ancestor[vop] = v;
+            double shift = (s.prelim[vim] + sim) - (s.prelim[vip] + sip) + 1;
+            if (shift > 0) {
+                int a = parent[s.ancestor[vim]] == parent[v] ? s.ancestor[vim] : defaultAncestor;
+                moveSubtree(a, v, shift, s);
+                sip += shift;
+                sop += shift;
+            }
+            sim += s.mod[vim];
+            sip += s.mod[vip];
+            som += s.mod[vom];
+            sop += s.mod[vop];
+        }
+        if (nextRight(vim, s) >= 0 && nextRight(vop, s) < 0) {
+            s.thread[vop] = nextRight(vim, s);
+            s.mod[vop] += sim - sop;
+        }
+        if (nextLeft(vip, s) >= 0 && nextLeft(vom, s) < 0) {
+            s.thread[vom] = nextLeft(vip, s);
+            s.mod[vom] += sip - som;
+            defaultAncestor = v;
+        }
+        return defaultAncestor;
+    }
+
+    private void moveSubtree(int wm, int wp, double shift, State s) {
+        int subtrees = s.number[wp] - s.number[wm];
+        s.change[wp] -= shift / subtrees;
+        s.shift[wp] += shift;
+        s.change[wm] += shift / subtrees;
+        s.prelim[wp] += shift;
+        s.mod[wp] += shift;
+    }
+
+    private void executeShifts(int v, State s) {
+        double shift = 0;
+        double change = 0;
+        for (int i = childStart[v + 1] - 1; i >= childStart[v]; i--) {
+            int w = children[i];
+            s.prelim[w] += shift;
+            s.mod[w] += shift;
+            change += s.change[w];
+            shift += s.shift[w] + change;
+        }
+    }
+
+    private int nextLeft(int v, State s) {
+        return childCount(v) > 0 ? children[childStart[v]] : s.thread[v];
+    }
+
+    private int nextRight(int v, State s) {
+        return childCount(v) > 0 ? children[childStart[v + 1] - 1] : s.thread[v];
+    }
+
+    private int leftSibling(int v, int[] number) {
+        return v == 0 || number[v] == 0 ? -1 : children[childStart[parent[v]] + number[v] - 1];
+    }
+
+    private int childCount(int v) {
+        return childStart[v + 1] - childStart[v];
+    }
+
+    /**
+     * The per-node scratch arrays of the first walk.
+     */
+    private static class State {
+        final double[] prelim;
+        final double[] mod;
+        final double[] shift;
+        final double[] change;
+        final int[] thread;
+        final int[] ancestor;
+        final int[] number;
+
+        State(double[] prelim, double[] mod, double[] shift, double[] change, int[] thread,
+              int[] ancestor, int[] number) {
+            this.prelim = prelim;
+            this.mod = mod;
+            this.shift = shift;
+            this.change = change;
+            this.thread = thread;
+            this.ancestor = ancestor;
+            this.number = number;
+        }
+    }
+
+    /** GETTER METHODS */
+
+    /**
+     * @return the number of vertices in the forest
+     */
+    public int size() {
+        return labels.length - 1;
+    }
+
+    /**
+     * Returns the label of a node. Nodes are numbered from 0 in pre-order, so every node comes
+     * after its parent.
+     *
+     * @param i a node number
+     * @return the label of node {@code i}
+     */
+    public String getLabel(int i) {
+        return labels[i + 1];
+    }
+
+    /**
+     * @param i a node number
+     * @return the number of the parent of node {@code i}, or -1 if it is a root
+     */
+    public int getParent(int i) {
+        return parent[i + 1] - 1;
+    }
+
+    /**
+     * @param i a node number
+     * @return the horizontal position of node {@code i}, between 0 and {@link #getWidth}
+     */
+    public double getX(int i) {
+        return x[i + 1];
+    }
+
+    /**
+     * @param i a node number
+     * @return the depth of node {@code i}, 0 for a root
+     */
+    public int getDepth(int i) {
+        return depth[i + 1];
+    }
+
+    /**
+     * @return the horizontal position of the rightmost node
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the depth of the deepest node
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Chooses the order in which a {@link GraphSnapshot} numbers its vertices. Searches look up
+ * per-vertex state by vertex id, so an order that gives nearby ids to vertices that are visited
+ * together turns scattered memory reads into nearby ones. See {@link GraphSnapshot#reorder}.
+ */
+public interface VertexOrdering {
+
+    /**
+     * Breadth-first order over the edges in both directions. Each connected component starts at
+     * its vertex of highest degree.
+     */
+    VertexOrdering BFS = VertexOrderings::breadthFirst;
+
+    /**
+     * Reverse Cuthill-McKee order: breadth-first from a vertex far from the rest of its
+     * component, visiting the neighbors of each vertex in increasing degree, then reversed. It
+     * keeps the ends of every edge close together.
+     */
+    VertexOrdering REVERSE_CUTHILL_MCKEE = VertexOrderings::reverseCuthillMcKee;
+
+    /**
+     * Vertices in decreasing degree, so that the vertices most edges lead to share a few cache
+     * lines.
+     */
+    VertexOrdering DEGREE = VertexOrderings::byDegree;
+
+    /**
+     * Vertices grouped by community, found by label propagation, with the largest communities
+     * first and each community in breadth-first order. Similar in aim to Rabbit Order and Gorder.
+     */
+    VertexOrdering COMMUNITY = VertexOrderings::byCommunity;
+
+    /**
+     * Orders the vertices of a graph in compressed sparse row form: the edges of vertex v go to
+     * {@code targets[offsets[v]]} through {@code targets[offsets[v + 1] - 1]}.
+     *
+     * @param offsets where the edges of each vertex start, with one extra entry at the end
+     * @param targets the vertex id each edge goes to
+     * @return the vertex ids in their new order, so that the vertex numbered i in the new order
+     *         is the one numbered {@code order[i]} now
+     */
+    int[] order(int[] offsets, int[] targets);
+}
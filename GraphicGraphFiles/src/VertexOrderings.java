@@ -0,0 +1,314 @@
+import java.util.Arrays;
+
+/**
+ * The orderings offered by {@link VertexOrdering}. Each one treats every edge as going both ways,
+ * since a search reads the state of a vertex whichever end of an edge it stands on.
+ */
+final class VertexOrderings {
+
+    // Most rounds of label propagation when finding communities
+    private static final int PROPAGATION_ROUNDS = 10;
+    // Most searches for a vertex of larger eccentricity when starting a component in RCM
+    private static final int PERIPHERAL_SEARCHES = 8;
+
+    private VertexOrderings() {
+    }
+
+    static int[] breadthFirst(int[] offsets, int[] targets) {
+        Undirected g = new Undirected(offsets, targets);
+        int[] order = new int[g.n];
+        boolean[] placed = new boolean[g.n];
+        int count = 0;
+        for (int root : g.byDegree(true)) {
+            if (placed[root]) {
+                continue;
+            }
+            placed[root] = true;
+            order[count++] = root;
+            for (int head = count - 1; head < count; head++) {
+                int v = order[head];
+                for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                    int t = g.neighbors[e];
+                    if (!placed[t]) {
+                        placed[t] = true;
+                        order[count++] = t;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    static int[] reverseCuthillMcKee(int[] offsets, int[] targets) {
+        Undirected g = new Undirected(offsets, targets);
+        int[] order = new int[g.n];
+        boolean[] placed = new boolean[g.n];
+        // Unplaced neighbors of one vertex, as degree in the high half and id in the low half
+        long[] batch = new long[g.maxDegree()];
+        int count = 0;
+        for (int root : g.byDegree(false)) {
+            if (placed[root]) {
+                continue;
+            }
+            int start = g.peripheral(root);
+            placed[start] = true;
+            order[count++] = start;
+            for (int head = count - 1; head < count; head++) {
+                int v = order[head];
+                int k = 0;
+                for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                    int t = g.neighbors[e];
+                    if (!placed[t]) {
+                        placed[t] = true;
+                        batch[k++] = (long) g.degree(t) << 32 | t;
+                    }
+                }
+                Arrays.sort(batch, 0, k);
+                for (int i = 0; i < k; i++) {
+                    order[count++] = (int) batch[i];
+                }
+            }
+        }
+        for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    static int[] byDegree(int[] offsets, int[] targets) {
+        return new Undirected(offsets, targets).byDegree(true);
+    }
+
+    static int[] byCommunity(int[] offsets, int[] targets) {
+        Undirected g = new Undirected(offsets, targets);
+        int n = g.n;
+        int[] byDegree = g.byDegree(true);
+
+        // Label propagation: each vertex joins the community most of its neighbors are in,
+        // keeping its own on a tie, until no vertex moves
+        int[] community = new int[n];
+        for (int v = 0; v < n; v++) {
+            community[v] = v;
+        }
+        int[] votes = new int[n];
+        int[] candidates = new int[g.maxDegree()];
+        for (int round = 0; round < PROPAGATION_ROUNDS; round++) {
+            int moved = 0;
+            for (int v : byDegree) {
+                int k = 0;
+                for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                    int c = community[g.neighbors[e]];
+                    if (votes[c]++ == 0) {
+                        candidates[k++] = c;
+                    }
+                }
+                int best = community[v];
+                int bestVotes = votes[best];
+                for (int i = 0; i < k; i++) {
+                    int c = candidates[i];
+                    if (votes[c] > bestVotes
+                            || (votes[c] == bestVotes && best != community[v] && c < best)) {
+                        best = c;
+                        bestVotes = votes[c];
+                    }
+                }
+                for (int i = 0; i < k; i++) {
+                    votes[candidates[i]] = 0;
+                }
+                if (best != community[v]) {
+                    community[v] = best;
+                    moved++;
+                }
+            }
+            if (moved == 0) {
+                break;
+            }
+        }
+
+        // Group the vertices by community, largest first, keeping the degree order inside each
+        int[] size = new int[n];
+        for (int v = 0; v < n; v++) {
+            size[community[v]]++;
+        }
+        long[] bySize = new long[n];
+        int communities = 0;
+        for (int c = 0; c < n; c++) {
+            if (size[c] > 0) {
+                bySize[communities++] = (long) (n - size[c]) << 32 | c;
+            }
+        }
+        Arrays.sort(bySize, 0, communities);
+        int[] next = new int[n];
+        int position = 0;
+        for (int i = 0; i < communities; i++) {
+            int c = (int) bySize[i];
+            next[c] = position;
+            position += size[c];
+        }
+        int[] grouped = new int[n];
+        for (int v : byDegree) {
+            grouped[next[community[v]]++] = v;
+        }
+
+        // Lay out each community breadth-first from its vertex of highest degree
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        int count = 0;
+        for (int root : grouped) {
+            if (placed[root]) {
+                continue;
+            }
+            placed[root] = true;
+            order[count++] = root;
+            for (int head = count - 1; head < count; head++) {
+                int v = order[head];
+                for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                    int t = g.neighbors[e];
+                    if (!placed[t] && community[t] == community[root]) {
+                        placed[t] = true;
+                        order[count++] = t;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * A graph in compressed sparse row form with every edge in both directions and no
+     * repeated neighbors, plus scratch space for searches.
+     */
+    private static final class Undirected {
+        private final int n;
+        private final int[] offsets;
+        private final int[] neighbors;
+        // Scratch for eccentricity(): a vertex was reached by the current search if its mark
+        // equals epoch
+        private final int[] mark;
+        private final int[] depth;
+        private final int[] queue;
+        private int epoch;
+        // The vertex eccentricity() found farthest from its start, of least degree on a tie
+        private int farthest;
+
+        Undirected(int[] outOffsets, int[] targets) {
+            n = outOffsets.length - 1;
+            int[] start = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                    start[v + 1]++;
+                    start[targets[e] + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                start[v + 1] += start[v];
+            }
+            int[] both = new int[start[n]];
+            int[] fill = Arrays.copyOf(start, n);
+            for (int v = 0; v < n; v++) {
+                for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                    both[fill[v]++] = targets[e];
+                    both[fill[targets[e]]++] = v;
+                }
+            }
+            // Sort each list and drop the second copy of edges that were already both ways
+            offsets = new int[n + 1];
+            int edge = 0;
+            for (int v = 0; v < n; v++) {
+                offsets[v] = edge;
+                Arrays.sort(both, start[v], start[v + 1]);
+                for (int e = start[v]; e < start[v + 1]; e++) {
+                    if (e == start[v] || both[e] != both[e - 1]) {
+                        both[edge++] = both[e];
+                    }
+                }
+            }
+            offsets[n] = edge;
+            neighbors = Arrays.copyOf(both, edge);
+            mark = new int[n];
+            depth = new int[n];
+            queue = new int[n];
+        }
+
+        int degree(int v) {
+            return offsets[v + 1] - offsets[v];
+        }
+
+        int maxDegree() {
+            int max = 0;
+            for (int v = 0; v < n; v++) {
+                max = Math.max(max, degree(v));
+            }
+            return max;
+        }
+
+        /**
+         * Counting sort of the vertex ids by degree, ties in id order.
+         */
+        int[] byDegree(boolean decreasing) {
+            int max = maxDegree();
+            int[] next = new int[max + 2];
+            for (int v = 0; v < n; v++) {
+                next[key(v, max, decreasing) + 1]++;
+            }
+            for (int d = 0; d <= max; d++) {
+                next[d + 1] += next[d];
+            }
+            int[] sorted = new int[n];
+            for (int v = 0; v < n; v++) {
+                sorted[next[key(v, max, decreasing)]++] = v;
+            }
+            return sorted;
+        }
+
+        private int key(int v, int max, boolean decreasing) {
+            return decreasing ? max - degree(v) : degree(v);
+        }
+
+        /**
+         * Finds a pseudo-peripheral vertex in the component of {@code v}: starting from
+         * {@code v}, repeatedly moves to the farthest vertex while that increases the
+         * eccentricity.
+         */
+        int peripheral(int v) {
+            int eccentricity = eccentricity(v);
+            for (int i = 0; i < PERIPHERAL_SEARCHES; i++) {
+                int candidate = farthest;
+                int candidateEccentricity = eccentricity(candidate);
+                if (candidateEccentricity <= eccentricity) {
+                    break;
+                }
+                v = candidate;
+                eccentricity = candidateEccentricity;
+            }
+            return v;
+        }
+
+        private int eccentricity(int v) {
+            epoch++;
+            mark[v] = epoch;
+            depth[v] = 0;
+            queue[0] = v;
+            int tail = 1;
+            farthest = v;
+            for (int head = 0; head < tail; head++) {
+                int u = queue[head];
+                if (depth[u] > depth[farthest]
+                        || (depth[u] == depth[farthest] && degree(u) < degree(farthest))) {
+                    farthest = u;
+                }
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int t = neighbors[e];
+                    if (mark[t] != epoch) {
+                        mark[t] = epoch;
+                        depth[t] = depth[u] + 1;
+                        queue[tail++] = t;
+                    }
+                }
+            }
+            return depth[farthest];
+        }
+    }
+}